@@ -1,10 +1,20 @@
 package org.metadatacenter.cedar.resource;
 
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.metadatacenter.cedar.artifact.ArtifactServerClient;
+import org.metadatacenter.cedar.resource.cache.PersistentCachePool;
+import org.metadatacenter.cedar.resource.cluster.NodeHeartbeat;
 import org.metadatacenter.cedar.resource.health.ResourceServerHealthCheck;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphJobService;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphPropagator;
+import org.metadatacenter.cedar.resource.indexing.IncrementalReindexService;
+import org.metadatacenter.cedar.resource.indexing.IndexingOutbox;
 import org.metadatacenter.cedar.resource.resources.*;
 import org.metadatacenter.cedar.resource.search.IndexCreator;
+import org.metadatacenter.cedar.resource.task.BackgroundTaskExecutor;
+import org.metadatacenter.cedar.resource.task.TaskStatusStore;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceApplication;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.model.ServerName;
@@ -15,9 +25,14 @@ import org.metadatacenter.server.search.elasticsearch.service.NodeSearchingServi
 import org.metadatacenter.server.search.permission.SearchPermissionEnqueueService;
 import org.metadatacenter.server.search.util.IndexUtils;
 import org.metadatacenter.server.valuerecommender.ValuerecommenderReindexQueueService;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.ForkJoinPool;
 
 public class ResourceServerApplication extends CedarMicroserviceApplication<ResourceServerConfiguration> {
 
+  private NodeIndexingService nodeIndexingService;
+
   public static void main(String[] args) throws Exception {
     new ResourceServerApplication().run(args);
   }
@@ -36,7 +51,7 @@ public class ResourceServerApplication extends CedarMicroserviceApplication<Reso
     UserSummaryCache.init(cedarConfig, userService);
 
     IndexUtils indexUtils = new IndexUtils(cedarConfig);
-    NodeIndexingService nodeIndexingService = indexUtils.getNodeIndexingService();
+    nodeIndexingService = indexUtils.getNodeIndexingService();
     NodeSearchingService nodeSearchingService = indexUtils.getNodeSearchingService();
 
     SearchPermissionEnqueueService searchPermissionEnqueueService = new SearchPermissionEnqueueService(cedarConfig);
@@ -59,6 +74,65 @@ public class ResourceServerApplication extends CedarMicroserviceApplication<Reso
 
   @Override
   public void runApp(ResourceServerConfiguration configuration, Environment environment) {
+    final ArtifactServerClient artifactServerClient = new ArtifactServerClient(configuration.getArtifactServerClient());
+    // Inclusion job pollers, incremental reindex workers, a thread per background task pool, plus the outbox flusher,
+    // the heartbeat, the reindex lease keeper, the task lock keeper and the inclusion job recovery, which holds two
+    // connections at once
+    final int backgroundRedisConnections = configuration.getInclusionSubgraphJobs().getWorkers()
+        + configuration.getIncrementalReindex().getWorkers() + BackgroundTaskExecutor.Pool.values().length + 6;
+    final JedisPool persistentCachePool = PersistentCachePool.create(cedarConfig, configuration.getPersistentCachePool(),
+        backgroundRedisConnections);
+    final NodeHeartbeat nodeHeartbeat = new NodeHeartbeat(persistentCachePool);
+    final InclusionSubgraphPropagator inclusionSubgraphPropagator = new InclusionSubgraphPropagator(artifactServerClient,
+        cedarConfig.getMicroserviceUrlUtil());
+    final InclusionSubgraphJobService inclusionSubgraphJobService = new InclusionSubgraphJobService(userService,
+        persistentCachePool, nodeHeartbeat, inclusionSubgraphPropagator, configuration.getInclusionSubgraphJobs());
+    final IndexingOutbox indexingOutbox = configuration.getIndexingOutbox().isEnabled()
+        ? new IndexingOutbox(cedarConfig, userService, persistentCachePool, nodeHeartbeat, nodeIndexingService,
+        configuration.getIndexingOutbox())
+        : null;
+    final IncrementalReindexService incrementalReindexService = new IncrementalReindexService(cedarConfig, userService,
+        persistentCachePool, nodeHeartbeat, nodeIndexingService, configuration.getIncrementalReindex());
+    final TaskStatusStore taskStatusStore = new TaskStatusStore(persistentCachePool, nodeHeartbeat,
+        configuration.getBackgroundTasks());
+    final BackgroundTaskExecutor backgroundTaskExecutor = new BackgroundTaskExecutor(configuration.getBackgroundTasks(),
+        taskStatusStore, environment.metrics());
+    // Template diffs of concurrent requests share this pool, so they do not take more than its threads
+    final ForkJoinPool deltaFinderPool = new ForkJoinPool(configuration.getDeltaFinder().getParallelism());
+    environment.lifecycle().manage(new Managed() {
+      @Override
+      public void start() {
+        nodeHeartbeat.start();
+        taskStatusStore.start();
+        inclusionSubgraphJobService.start();
+        if (indexingOutbox != null) {
+          indexingOutbox.start();
+        }
+        incrementalReindexService.resume();
+      }
+
+      @Override
+      public void stop() throws Exception {
+        backgroundTaskExecutor.stop();
+        taskStatusStore.stop();
+        incrementalReindexService.stop();
+        inclusionSubgraphJobService.stop();
+        if (indexingOutbox != null) {
+          indexingOutbox.stop();
+        }
+        nodeHeartbeat.stop();
+        deltaFinderPool.shutdown();
+        artifactServerClient.close();
+        persistentCachePool.close();
+      }
+    });
+    AbstractResourceServerResource.injectArtifactServerClient(artifactServerClient);
+    AbstractResourceServerResource.injectIndexingOutbox(indexingOutbox);
+    CommandSearchResource.injectIncrementalReindexService(incrementalReindexService);
+    CommandSearchResource.injectBackgroundTaskServices(backgroundTaskExecutor, taskStatusStore);
+    CommandVersionResource.injectDeltaFinderPool(deltaFinderPool, configuration.getDeltaFinder().getParallelThreshold());
+    CommandInclusionSubgraphResource.injectInclusionSubgraphServices(inclusionSubgraphPropagator, inclusionSubgraphJobService);
+
     final IndexResource index = new IndexResource(cedarConfig);
     environment.jersey().register(index);
 
@@ -1,6 +1,63 @@
 package org.metadatacenter.cedar.resource;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.cedar.artifact.ArtifactServerClientConfig;
+import org.metadatacenter.cedar.resource.cache.PersistentCachePoolConfig;
+import org.metadatacenter.cedar.resource.deltafinder.DeltaFinderConfig;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphJobConfig;
+import org.metadatacenter.cedar.resource.indexing.IncrementalReindexConfig;
+import org.metadatacenter.cedar.resource.indexing.IndexingOutboxConfig;
+import org.metadatacenter.cedar.resource.task.BackgroundTaskConfig;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceConfiguration;
 
 public class ResourceServerConfiguration extends CedarMicroserviceConfiguration {
+
+  @JsonProperty
+  private ArtifactServerClientConfig artifactServerClient = new ArtifactServerClientConfig();
+
+  @JsonProperty
+  private PersistentCachePoolConfig persistentCachePool = new PersistentCachePoolConfig();
+
+  @JsonProperty
+  private InclusionSubgraphJobConfig inclusionSubgraphJobs = new InclusionSubgraphJobConfig();
+
+  @JsonProperty
+  private IndexingOutboxConfig indexingOutbox = new IndexingOutboxConfig();
+
+  @JsonProperty
+  private IncrementalReindexConfig incrementalReindex = new IncrementalReindexConfig();
+
+  @JsonProperty
+  private BackgroundTaskConfig backgroundTasks = new BackgroundTaskConfig();
+
+  @JsonProperty
+  private DeltaFinderConfig deltaFinder = new DeltaFinderConfig();
+
+  public ArtifactServerClientConfig getArtifactServerClient() {
+    return artifactServerClient;
+  }
+
+  public PersistentCachePoolConfig getPersistentCachePool() {
+    return persistentCachePool;
+  }
+
+  public InclusionSubgraphJobConfig getInclusionSubgraphJobs() {
+    return inclusionSubgraphJobs;
+  }
+
+  public IndexingOutboxConfig getIndexingOutbox() {
+    return indexingOutbox;
+  }
+
+  public IncrementalReindexConfig getIncrementalReindex() {
+    return incrementalReindex;
+  }
+
+  public BackgroundTaskConfig getBackgroundTasks() {
+    return backgroundTasks;
+  }
+
+  public DeltaFinderConfig getDeltaFinder() {
+    return deltaFinder;
+  }
 }
@@ -0,0 +1,73 @@
+package org.metadatacenter.cedar.resource.cache;
+
+import org.metadatacenter.id.CedarFolderId;
+import org.metadatacenter.model.request.NodeListRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Folder content counts by folder, user and filter (resource types, version, publication status), so that paging
+ * through a folder does not run the count traversal for every page. The count query runs in the session of the
+ * requesting user, so counts are not shared between users.
+ * <p>
+ * A folder's counts are dropped when something is created in, moved into or out of, or deleted from it. Version
+ * changes can alter the counts of several folders, those drop everything. The cache is local to this server instance,
+ * changes made through another instance are only seen here once the entry expires: a count can be off by those changes
+ * for up to {@link #TTL_MILLIS}. The paging links of a listing are built from the count, while the page itself is
+ * always read from the graph.
+ */
+public class FolderContentsCountCache {
+
+  private static final long TTL_MILLIS = 10_000;
+  private static final int MAX_FOLDERS = 10_000;
+
+  private static class Entry {
+    private final long count;
+    private final long expiresAt;
+
+    private Entry(long count, long expiresAt) {
+      this.count = count;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final Map<String, Map<String, Entry>> countsByFolder = new ConcurrentHashMap<>();
+
+  public long get(CedarFolderId folderId, String userId, NodeListRequest req, LongSupplier counter) {
+    String filterKey = buildFilterKey(userId, req);
+    Map<String, Entry> folderCounts = countsByFolder.get(folderId.getId());
+    if (folderCounts != null) {
+      Entry entry = folderCounts.get(filterKey);
+      if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+        return entry.count;
+      }
+    }
+    long count = counter.getAsLong();
+    put(folderId, userId, req, count);
+    return count;
+  }
+
+  public void put(CedarFolderId folderId, String userId, NodeListRequest req, long count) {
+    if (countsByFolder.size() >= MAX_FOLDERS && !countsByFolder.containsKey(folderId.getId())) {
+      countsByFolder.clear();
+    }
+    countsByFolder.computeIfAbsent(folderId.getId(), k -> new ConcurrentHashMap<>())
+        .put(buildFilterKey(userId, req), new Entry(count, System.currentTimeMillis() + TTL_MILLIS));
+  }
+
+  public void invalidate(CedarFolderId folderId) {
+    if (folderId != null) {
+      countsByFolder.remove(folderId.getId());
+    }
+  }
+
+  public void invalidateAll() {
+    countsByFolder.clear();
+  }
+
+  private static String buildFilterKey(String userId, NodeListRequest req) {
+    return userId + "|" + req.getResourceTypes() + "|" + req.getVersion() + "|" + req.getPublicationStatus();
+  }
+}
@@ -0,0 +1,27 @@
+package org.metadatacenter.cedar.resource.cache;
+
+import org.metadatacenter.config.CacheServerPersistent;
+import org.metadatacenter.config.CedarConfig;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+public class PersistentCachePool {
+
+  private PersistentCachePool() {
+  }
+
+  // Connects to the same Redis as the persistent queues, e.g. ValuerecommenderReindexQueueService. The background
+  // services may all hold a connection at once, the pool is sized to leave the configured share to the requests.
+  // A request waits at most maxWaitMillis for a connection, then fails
+  public static JedisPool create(CedarConfig cedarConfig, PersistentCachePoolConfig poolConfig, int backgroundConnections) {
+    CacheServerPersistent cacheConfig = cedarConfig.getCacheConfig().getPersistent();
+    JedisPoolConfig jedisPoolConfig = new JedisPoolConfig();
+    int maxTotal = backgroundConnections + poolConfig.getRequestConnections();
+    jedisPoolConfig.setMaxTotal(maxTotal);
+    jedisPoolConfig.setMaxIdle(maxTotal);
+    jedisPoolConfig.setBlockWhenExhausted(true);
+    jedisPoolConfig.setMaxWaitMillis(poolConfig.getMaxWaitMillis());
+    return new JedisPool(jedisPoolConfig, cacheConfig.getConnection().getHost(),
+        cacheConfig.getConnection().getPort(), cacheConfig.getConnection().getTimeout());
+  }
+}
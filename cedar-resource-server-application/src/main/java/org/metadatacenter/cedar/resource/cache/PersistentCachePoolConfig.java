@@ -0,0 +1,21 @@
+package org.metadatacenter.cedar.resource.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class PersistentCachePoolConfig {
+
+  // Connections for the request threads, on top of the ones held by the background services
+  @JsonProperty
+  private int requestConnections = 32;
+
+  @JsonProperty
+  private int maxWaitMillis = 2000;
+
+  public int getRequestConnections() {
+    return requestConnections;
+  }
+
+  public int getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+}
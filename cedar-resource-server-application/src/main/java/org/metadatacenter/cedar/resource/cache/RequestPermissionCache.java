@@ -0,0 +1,58 @@
+package org.metadatacenter.cedar.resource.cache;
+
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Read and write access decisions taken while serving a single request, keyed by the request context. The entries of
+ * a request go away together with its context.
+ * <p>
+ * Only decisions are kept, a check that fails with an exception is run again on the next call.
+ */
+public class RequestPermissionCache {
+
+  public enum AccessLevel {
+    READ, WRITE
+  }
+
+  public interface AccessCheck {
+    boolean hasAccess() throws CedarException;
+  }
+
+  private final Map<CedarRequestContext, Map<String, Boolean>> decisionsByRequest =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  public boolean hasAccess(CedarRequestContext context, String resourceId, AccessLevel level, AccessCheck check)
+      throws CedarException {
+    Map<String, Boolean> decisions = decisionsByRequest.computeIfAbsent(context, k -> new HashMap<>());
+    synchronized (decisions) {
+      Boolean decision = decisions.get(buildKey(resourceId, level));
+      if (decision != null) {
+        return decision;
+      }
+    }
+    boolean hasAccess = check.hasAccess();
+    synchronized (decisions) {
+      decisions.put(buildKey(resourceId, level), hasAccess);
+      // Write access implies read access
+      if (level == AccessLevel.WRITE && hasAccess) {
+        decisions.put(buildKey(resourceId, AccessLevel.READ), true);
+      }
+    }
+    return hasAccess;
+  }
+
+  // Called after the request changed permissions, or moved resources
+  public void invalidate(CedarRequestContext context) {
+    decisionsByRequest.remove(context);
+  }
+
+  private static String buildKey(String resourceId, AccessLevel level) {
+    return level.name() + "|" + resourceId;
+  }
+}
@@ -0,0 +1,79 @@
+package org.metadatacenter.cedar.resource.cache;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.artifacts.model.core.TemplateSchemaArtifact;
+import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed models of stored templates, so that repeated compatibility checks of a template being edited only parse the
+ * incoming version.
+ * <p>
+ * A template is kept with the SHA-256 digest of the stored document it was read from, and is parsed again once the
+ * stored document differs in any way, including changes that leave its last updated timestamp as it was. Updates and
+ * deletes made through this instance drop the template right away. At most the least recently used
+ * {@link #MAX_TEMPLATES} templates are kept.
+ */
+public class TemplateSchemaArtifactCache {
+
+  private static final int MAX_TEMPLATES = 100;
+
+  private static class Entry {
+    private final String digest;
+    private final TemplateSchemaArtifact artifact;
+
+    private Entry(String digest, TemplateSchemaArtifact artifact) {
+      this.digest = digest;
+      this.artifact = artifact;
+    }
+  }
+
+  private final Map<String, Entry> templates = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_TEMPLATES;
+    }
+  };
+
+  public TemplateSchemaArtifact get(String templateId, ObjectNode storedTemplateNode) {
+    String digest = digest(storedTemplateNode);
+    if (digest != null) {
+      synchronized (templates) {
+        Entry entry = templates.get(templateId);
+        if (entry != null && entry.digest.equals(digest)) {
+          return entry.artifact;
+        }
+      }
+    }
+    // Parsed outside the lock, two concurrent misses for the same template both parse it
+    TemplateSchemaArtifact artifact = new JsonArtifactReader().readTemplateSchemaArtifact(storedTemplateNode);
+    if (digest != null) {
+      synchronized (templates) {
+        templates.put(templateId, new Entry(digest, artifact));
+      }
+    }
+    return artifact;
+  }
+
+  public void invalidate(String templateId) {
+    synchronized (templates) {
+      templates.remove(templateId);
+    }
+  }
+
+  // Serializing the tree is cheap next to reading the model from it. A document that can not be serialized is not
+  // cached.
+  private static String digest(ObjectNode storedTemplateNode) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(JsonMapper.MAPPER.writeValueAsBytes(storedTemplateNode)));
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.metadatacenter.cedar.resource.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liveness of the resource server instances sharing the persistent Redis.
+ * <p>
+ * Every instance gets a random node id when it starts, and keeps a key of that id alive by refreshing its expiry. Work
+ * recorded under a node id whose key expired belongs to an instance that is gone, and can be taken over. The id is
+ * not derived from the host, so a replaced container is a new node, and two instances on a host are two nodes.
+ */
+public class NodeHeartbeat {
+
+  private static final Logger log = LoggerFactory.getLogger(NodeHeartbeat.class);
+
+  public static final long LEASE_MILLIS = 30_000;
+  private static final long BEAT_INTERVAL_MILLIS = LEASE_MILLIS / 3;
+
+  private static final String NODE_KEY_PREFIX = "cedar-resource-server:nodes:";
+
+  private final JedisPool jedisPool;
+  private final String nodeId = UUID.randomUUID().toString();
+  private ScheduledExecutorService scheduler;
+
+  public NodeHeartbeat(JedisPool jedisPool) {
+    this.jedisPool = jedisPool;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public void start() {
+    beat();
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "node-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::beat, BEAT_INTERVAL_MILLIS, BEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(NODE_KEY_PREFIX + nodeId);
+    } catch (Exception e) {
+      log.error("Error while removing the heartbeat of node " + nodeId, e);
+    }
+  }
+
+  public boolean isAlive(String otherNodeId) {
+    if (nodeId.equals(otherNodeId)) {
+      return true;
+    }
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.exists(NODE_KEY_PREFIX + otherNodeId);
+    }
+  }
+
+  private void beat() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.set(NODE_KEY_PREFIX + nodeId, String.valueOf(System.currentTimeMillis()),
+          SetParams.setParams().px(LEASE_MILLIS));
+    } catch (Exception e) {
+      log.error("Error while refreshing the heartbeat of node " + nodeId, e);
+    }
+  }
+}
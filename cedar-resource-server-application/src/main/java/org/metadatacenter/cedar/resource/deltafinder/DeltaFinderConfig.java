@@ -0,0 +1,21 @@
+package org.metadatacenter.cedar.resource.deltafinder;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.cedar.deltafinder.DeltaFinder;
+
+public class DeltaFinderConfig {
+
+  @JsonProperty
+  private int parallelism = 4;
+
+  @JsonProperty
+  private int parallelThreshold = DeltaFinder.DEFAULT_PARALLEL_THRESHOLD;
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public int getParallelThreshold() {
+    return parallelThreshold;
+  }
+}
@@ -0,0 +1,60 @@
+package org.metadatacenter.cedar.resource.inclusionsubgraph;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.util.json.JsonMapper;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Parsed artifact documents of a single inclusion subgraph update, keyed by typed artifact id. A document is
+ * downloaded at most once, concurrent readers share the pending download.
+ */
+public class InclusionSubgraphDocumentCache {
+
+  private final Map<String, CompletableFuture<JsonNode>> documents = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public CompletableFuture<JsonNode> get(String id, Function<String, CompletableFuture<JsonNode>> loader) {
+    boolean[] loaded = new boolean[1];
+    CompletableFuture<JsonNode> document = documents.computeIfAbsent(id, k -> {
+      loaded[0] = true;
+      return loader.apply(k);
+    });
+    if (loaded[0]) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return document;
+  }
+
+  // Called once the document was stored on the artifact server
+  public void update(String id, JsonNode document) {
+    documents.put(id, CompletableFuture.completedFuture(document));
+  }
+
+  public void invalidate(String id) {
+    documents.remove(id);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public ObjectNode getStats() {
+    ObjectNode stats = JsonMapper.MAPPER.createObjectNode();
+    stats.put("hits", getHits());
+    stats.put("misses", getMisses());
+    return stats;
+  }
+}
@@ -0,0 +1,20 @@
+package org.metadatacenter.cedar.resource.inclusionsubgraph;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class InclusionSubgraphJobConfig {
+
+  @JsonProperty
+  private int workers = 2;
+
+  @JsonProperty
+  private int finishedJobRetentionHours = 168;
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public int getFinishedJobRetentionHours() {
+    return finishedJobRetentionHours;
+  }
+}
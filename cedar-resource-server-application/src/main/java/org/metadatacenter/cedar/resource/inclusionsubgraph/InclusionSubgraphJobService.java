@@ -0,0 +1,301 @@
+package org.metadatacenter.cedar.resource.inclusionsubgraph;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.resource.cluster.NodeHeartbeat;
+import org.metadatacenter.error.CedarErrorKey;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarPermissionException;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.id.CedarUntypedFilesystemResourceId;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.ResourcePermissionServiceSession;
+import org.metadatacenter.server.security.model.user.CedarUser;
+import org.metadatacenter.server.service.UserService;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs inclusion subgraph propagations in the background.
+ * <p>
+ * Jobs are stored in the persistent Redis: a hash per job holds the updates and the progress counters, and the job
+ * ids wait in a queue. A job being executed is kept in the processing list of the node running it. Once the heartbeat
+ * of a node expires, the jobs of its processing list are put back to the queue by the other nodes. Re-running a job
+ * is safe, since it writes the same subdocuments again.
+ * <p>
+ * A job runs with the identity of the user who submitted it, and write access to every target is checked again
+ * before anything is written.
+ */
+public class InclusionSubgraphJobService {
+
+  private static final Logger log = LoggerFactory.getLogger(InclusionSubgraphJobService.class);
+
+  public enum JobStatus {
+    QUEUED, RUNNING, COMPLETE, FAILED
+  }
+
+  private static final String KEY_PREFIX = "cedar-resource-server:inclusion-subgraph:";
+  private static final String QUEUE_KEY = KEY_PREFIX + "queue";
+  private static final String PROCESSING_KEY_PREFIX = KEY_PREFIX + "processing:";
+  private static final String PROCESSING_NODES_KEY = KEY_PREFIX + "processing-nodes";
+  private static final String JOB_KEY_PREFIX = KEY_PREFIX + "job:";
+  private static final int POLL_TIMEOUT_SECONDS = 5;
+
+  private static final String FIELD_ID = "id";
+  private static final String FIELD_STATUS = "status";
+  private static final String FIELD_ARTIFACT_ID = "artifactId";
+  private static final String FIELD_CREATED_BY = "createdBy";
+  private static final String FIELD_CREATED_AT = "createdAt";
+  private static final String FIELD_STARTED_AT = "startedAt";
+  private static final String FIELD_FINISHED_AT = "finishedAt";
+  private static final String FIELD_TOTAL = "total";
+  private static final String FIELD_PROCESSED = "processed";
+  private static final String FIELD_FAILED = "failed";
+  private static final String FIELD_ERROR = "error";
+  private static final String FIELD_UPDATES = "updates";
+  private static final String FIELD_CACHE_HITS = "documentCacheHits";
+  private static final String FIELD_CACHE_MISSES = "documentCacheMisses";
+
+  private final UserService userService;
+  private final JedisPool jedisPool;
+  private final NodeHeartbeat nodeHeartbeat;
+  private final InclusionSubgraphPropagator propagator;
+  private final InclusionSubgraphJobConfig config;
+  private final String processingKey;
+  private ExecutorService workers;
+  private ScheduledExecutorService recovery;
+  private volatile boolean running;
+
+  public InclusionSubgraphJobService(UserService userService, JedisPool jedisPool, NodeHeartbeat nodeHeartbeat,
+                                     InclusionSubgraphPropagator propagator, InclusionSubgraphJobConfig config) {
+    this.userService = userService;
+    this.jedisPool = jedisPool;
+    this.nodeHeartbeat = nodeHeartbeat;
+    this.propagator = propagator;
+    this.config = config;
+    this.processingKey = PROCESSING_KEY_PREFIX + nodeHeartbeat.getNodeId();
+  }
+
+  public String submit(String artifactId, String userId, List<InclusionSubgraphUpdate> updates) throws IOException {
+    String jobId = UUID.randomUUID().toString();
+    Map<String, String> job = new HashMap<>();
+    job.put(FIELD_ID, jobId);
+    job.put(FIELD_STATUS, JobStatus.QUEUED.name());
+    job.put(FIELD_ARTIFACT_ID, artifactId);
+    job.put(FIELD_CREATED_BY, userId);
+    job.put(FIELD_CREATED_AT, Instant.now().toString());
+    job.put(FIELD_TOTAL, String.valueOf(updates.size()));
+    job.put(FIELD_PROCESSED, "0");
+    job.put(FIELD_FAILED, "0");
+    job.put(FIELD_UPDATES, JsonMapper.MAPPER.writeValueAsString(updates));
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.hset(JOB_KEY_PREFIX + jobId, job);
+      jedis.lpush(QUEUE_KEY, jobId);
+    }
+    return jobId;
+  }
+
+  public ObjectNode getStatus(String jobId) {
+    Map<String, String> job;
+    try (Jedis jedis = jedisPool.getResource()) {
+      job = jedis.hgetAll(JOB_KEY_PREFIX + jobId);
+    }
+    if (job == null || job.isEmpty()) {
+      return null;
+    }
+    ObjectNode status = JsonMapper.MAPPER.createObjectNode();
+    status.put(FIELD_ID, job.get(FIELD_ID));
+    status.put(FIELD_STATUS, job.get(FIELD_STATUS));
+    status.put(FIELD_ARTIFACT_ID, job.get(FIELD_ARTIFACT_ID));
+    status.put(FIELD_CREATED_BY, job.get(FIELD_CREATED_BY));
+    status.put(FIELD_CREATED_AT, job.get(FIELD_CREATED_AT));
+    status.put(FIELD_STARTED_AT, job.get(FIELD_STARTED_AT));
+    status.put(FIELD_FINISHED_AT, job.get(FIELD_FINISHED_AT));
+    status.put(FIELD_TOTAL, Long.parseLong(job.get(FIELD_TOTAL)));
+    status.put(FIELD_PROCESSED, Long.parseLong(job.get(FIELD_PROCESSED)));
+    status.put(FIELD_FAILED, Long.parseLong(job.get(FIELD_FAILED)));
+    status.put(FIELD_ERROR, job.get(FIELD_ERROR));
+    if (job.containsKey(FIELD_CACHE_HITS)) {
+      ObjectNode documentCache = status.putObject("documentCache");
+      documentCache.put("hits", Long.parseLong(job.get(FIELD_CACHE_HITS)));
+      documentCache.put("misses", Long.parseLong(job.get(FIELD_CACHE_MISSES)));
+    }
+    return status;
+  }
+
+  public void start() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.sadd(PROCESSING_NODES_KEY, nodeHeartbeat.getNodeId());
+    }
+    running = true;
+    workers = Executors.newFixedThreadPool(config.getWorkers());
+    for (int i = 0; i < config.getWorkers(); i++) {
+      workers.submit(this::work);
+    }
+    recovery = Executors.newSingleThreadScheduledExecutor();
+    recovery.scheduleWithFixedDelay(this::requeueJobsOfDeadNodes, 0, NodeHeartbeat.LEASE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  // Jobs left in the processing list of this node are taken over by the other nodes once its heartbeat expired
+  public void stop() throws InterruptedException {
+    running = false;
+    recovery.shutdownNow();
+    workers.shutdown();
+    if (!workers.awaitTermination(POLL_TIMEOUT_SECONDS * 2, TimeUnit.SECONDS)) {
+      workers.shutdownNow();
+    }
+  }
+
+  private void work() {
+    while (running) {
+      String jobId;
+      try (Jedis jedis = jedisPool.getResource()) {
+        jobId = jedis.brpoplpush(QUEUE_KEY, processingKey, POLL_TIMEOUT_SECONDS);
+      } catch (Exception e) {
+        log.error("Error while polling the inclusion subgraph job queue", e);
+        sleepAfterError();
+        continue;
+      }
+      if (jobId != null) {
+        runJob(jobId);
+      }
+    }
+  }
+
+  private void requeueJobsOfDeadNodes() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (String nodeId : jedis.smembers(PROCESSING_NODES_KEY)) {
+        if (!nodeHeartbeat.isAlive(nodeId)) {
+          String jobId;
+          while ((jobId = jedis.rpoplpush(PROCESSING_KEY_PREFIX + nodeId, QUEUE_KEY)) != null) {
+            log.warn("Requeued inclusion subgraph job " + jobId + " of stopped node " + nodeId);
+          }
+          jedis.srem(PROCESSING_NODES_KEY, nodeId);
+        }
+      }
+    } catch (Exception e) {
+      log.error("Error while requeueing the inclusion subgraph jobs of stopped nodes", e);
+    }
+  }
+
+  private void runJob(String jobId) {
+    String jobKey = JOB_KEY_PREFIX + jobId;
+    InclusionSubgraphDocumentCache documentCache = new InclusionSubgraphDocumentCache();
+    try {
+      String updatesJson;
+      String userId;
+      try (Jedis jedis = jedisPool.getResource()) {
+        List<String> values = jedis.hmget(jobKey, FIELD_UPDATES, FIELD_CREATED_BY);
+        updatesJson = values.get(0);
+        userId = values.get(1);
+        if (updatesJson == null) {
+          log.warn("Inclusion subgraph job not found: " + jobId);
+          jedis.lrem(processingKey, 0, jobId);
+          return;
+        }
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_STATUS, JobStatus.RUNNING.name());
+        fields.put(FIELD_STARTED_AT, Instant.now().toString());
+        fields.put(FIELD_PROCESSED, "0");
+        fields.put(FIELD_FAILED, "0");
+        jedis.hset(jobKey, fields);
+      }
+      List<InclusionSubgraphUpdate> updates = JsonMapper.MAPPER.readValue(updatesJson, new TypeReference<>() {
+      });
+      CedarRequestContext userContext = buildUserContext(userId);
+      userMustHaveWriteAccessToTargets(userContext, updates);
+      propagator.propagate(userContext, updates, documentCache, new InclusionSubgraphPropagator.ProgressListener() {
+        @Override
+        public void targetUpdated(String targetId, int updateCount) {
+          incrementCounter(jobKey, FIELD_PROCESSED, updateCount);
+        }
+
+        @Override
+        public void targetFailed(String targetId, int updateCount, Throwable error) {
+          incrementCounter(jobKey, FIELD_FAILED, updateCount);
+        }
+      });
+      finishJob(jobId, JobStatus.COMPLETE, null, documentCache);
+    } catch (Exception e) {
+      log.error("Error while running inclusion subgraph job " + jobId, e);
+      finishJob(jobId, JobStatus.FAILED, e.getMessage(), documentCache);
+    }
+  }
+
+  private CedarRequestContext buildUserContext(String userId) throws Exception {
+    CedarUser user = userId == null ? null : userService.findUser(userId);
+    if (user == null) {
+      throw new CedarProcessingException("The user who submitted the job can not be found: " + userId);
+    }
+    return CedarRequestContextFactory.fromUser(user);
+  }
+
+  // Permissions may have changed since the job was submitted
+  public static void userMustHaveWriteAccessToTargets(CedarRequestContext c, List<InclusionSubgraphUpdate> updates)
+      throws CedarException {
+    Set<String> targetIds = new LinkedHashSet<>();
+    for (InclusionSubgraphUpdate update : updates) {
+      targetIds.add(update.getTargetId());
+    }
+    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(c);
+    for (String targetId : targetIds) {
+      if (!permissionSession.userHasWriteAccessToResource(CedarUntypedFilesystemResourceId.build(targetId))) {
+        throw new CedarPermissionException("You do not have write access to the artifact")
+            .errorKey(CedarErrorKey.NO_WRITE_ACCESS_TO_ARTIFACT)
+            .parameter("resourceId", targetId);
+      }
+    }
+  }
+
+  private void incrementCounter(String jobKey, String field, int increment) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.hincrBy(jobKey, field, increment);
+    }
+  }
+
+  private void finishJob(String jobId, JobStatus status, String error, InclusionSubgraphDocumentCache documentCache) {
+    String jobKey = JOB_KEY_PREFIX + jobId;
+    try (Jedis jedis = jedisPool.getResource()) {
+      Map<String, String> fields = new HashMap<>();
+      fields.put(FIELD_STATUS, status.name());
+      fields.put(FIELD_FINISHED_AT, Instant.now().toString());
+      fields.put(FIELD_CACHE_HITS, String.valueOf(documentCache.getHits()));
+      fields.put(FIELD_CACHE_MISSES, String.valueOf(documentCache.getMisses()));
+      if (error != null) {
+        fields.put(FIELD_ERROR, error);
+      }
+      jedis.hset(jobKey, fields);
+      jedis.hdel(jobKey, FIELD_UPDATES);
+      jedis.expire(jobKey, (int) TimeUnit.HOURS.toSeconds(config.getFinishedJobRetentionHours()));
+      jedis.lrem(processingKey, 0, jobId);
+    } catch (Exception e) {
+      log.error("Error while finishing inclusion subgraph job " + jobId, e);
+    }
+  }
+
+  private static void sleepAfterError() {
+    try {
+      Thread.sleep(TimeUnit.SECONDS.toMillis(POLL_TIMEOUT_SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
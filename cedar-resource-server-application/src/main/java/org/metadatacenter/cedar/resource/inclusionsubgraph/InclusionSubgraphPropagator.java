@@ -0,0 +1,188 @@
+package org.metadatacenter.cedar.resource.inclusionsubgraph;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.HttpStatus;
+import org.metadatacenter.cedar.artifact.ArtifactServerClient;
+import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.id.CedarTypedSchemaArtifactId;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.server.search.util.InclusionSubgraphUtil;
+import org.metadatacenter.server.url.MicroserviceUrlUtil;
+import org.metadatacenter.util.CedarResourceTypeUtil;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Applies the updates of an inclusion subgraph todo list on the artifact server.
+ * <p>
+ * The updates are grouped into dependency levels: an update is placed one level above the updates of its source, so
+ * every source is final before it is embedded in a target. Within a level the targets are updated concurrently, each
+ * of them with a single PUT.
+ */
+public class InclusionSubgraphPropagator {
+
+  private static final Logger log = LoggerFactory.getLogger(InclusionSubgraphPropagator.class);
+
+  public interface ProgressListener {
+
+    void targetUpdated(String targetId, int updateCount);
+
+    void targetFailed(String targetId, int updateCount, Throwable error);
+  }
+
+  private final ArtifactServerClient artifactServerClient;
+  private final MicroserviceUrlUtil microserviceUrlUtil;
+
+  public InclusionSubgraphPropagator(ArtifactServerClient artifactServerClient, MicroserviceUrlUtil microserviceUrlUtil) {
+    this.artifactServerClient = artifactServerClient;
+    this.microserviceUrlUtil = microserviceUrlUtil;
+  }
+
+  // Stops at the end of the first level with a failed target
+  public void propagate(CedarRequestContext c, List<InclusionSubgraphUpdate> updates, InclusionSubgraphDocumentCache documents)
+      throws CedarProcessingException {
+    for (List<InclusionSubgraphUpdate> level : groupByLevel(updates)) {
+      List<CompletableFuture<Void>> levelUpdates = new ArrayList<>();
+      for (Map.Entry<String, List<InclusionSubgraphUpdate>> entry : groupByTarget(level).entrySet()) {
+        levelUpdates.add(updateTarget(c, entry.getKey(), entry.getValue(), documents));
+      }
+      try {
+        CompletableFuture.allOf(levelUpdates.toArray(new CompletableFuture[0])).join();
+      } catch (CompletionException e) {
+        throw new CedarProcessingException(e);
+      }
+    }
+  }
+
+  // Goes on after failures. Targets depending on a failed one embed the version stored on the artifact server
+  public void propagate(CedarRequestContext c, List<InclusionSubgraphUpdate> updates, InclusionSubgraphDocumentCache documents,
+                        ProgressListener listener) {
+    for (List<InclusionSubgraphUpdate> level : groupByLevel(updates)) {
+      List<CompletableFuture<Void>> levelUpdates = new ArrayList<>();
+      for (Map.Entry<String, List<InclusionSubgraphUpdate>> entry : groupByTarget(level).entrySet()) {
+        String targetId = entry.getKey();
+        int updateCount = entry.getValue().size();
+        levelUpdates.add(updateTarget(c, targetId, entry.getValue(), documents).handle((v, e) -> {
+          if (e == null) {
+            listener.targetUpdated(targetId, updateCount);
+          } else {
+            log.error("Inclusion subgraph update of " + targetId + " failed", e);
+            listener.targetFailed(targetId, updateCount, e);
+          }
+          return null;
+        }));
+      }
+      CompletableFuture.allOf(levelUpdates.toArray(new CompletableFuture[0])).join();
+    }
+  }
+
+  private static Map<String, List<InclusionSubgraphUpdate>> groupByTarget(List<InclusionSubgraphUpdate> updates) {
+    Map<String, List<InclusionSubgraphUpdate>> updatesByTarget = new LinkedHashMap<>();
+    for (InclusionSubgraphUpdate update : updates) {
+      updatesByTarget.computeIfAbsent(update.getTargetId(), k -> new ArrayList<>()).add(update);
+    }
+    return updatesByTarget;
+  }
+
+  private static List<List<InclusionSubgraphUpdate>> groupByLevel(List<InclusionSubgraphUpdate> updates) {
+    Map<String, List<InclusionSubgraphUpdate>> updatesByTarget = groupByTarget(updates);
+    Map<String, Integer> targetLevels = new HashMap<>();
+    List<List<InclusionSubgraphUpdate>> levels = new ArrayList<>();
+    for (InclusionSubgraphUpdate update : updates) {
+      int level = getSourceLevel(update.getSourceId(), updatesByTarget, targetLevels, new HashSet<>());
+      while (levels.size() <= level) {
+        levels.add(new ArrayList<>());
+      }
+      levels.get(level).add(update);
+    }
+    return levels;
+  }
+
+  private static int getSourceLevel(String sourceId, Map<String, List<InclusionSubgraphUpdate>> updatesByTarget,
+                                    Map<String, Integer> targetLevels, Set<String> visiting) {
+    Integer known = targetLevels.get(sourceId);
+    if (known != null) {
+      return known;
+    }
+    List<InclusionSubgraphUpdate> sourceUpdates = updatesByTarget.get(sourceId);
+    // Guard against cycles, these should not be present in the inclusion graph
+    if (sourceUpdates == null || !visiting.add(sourceId)) {
+      return 0;
+    }
+    int level = 0;
+    for (InclusionSubgraphUpdate update : sourceUpdates) {
+      level = Math.max(level, getSourceLevel(update.getSourceId(), updatesByTarget, targetLevels, visiting) + 1);
+    }
+    visiting.remove(sourceId);
+    targetLevels.put(sourceId, level);
+    return level;
+  }
+
+  // Sources are fetched once, and a target replaces its cache entry once it is stored, so that later levels embed
+  // the new version
+  private CompletableFuture<Void> updateTarget(CedarRequestContext c, String targetId, List<InclusionSubgraphUpdate> updates,
+                                               InclusionSubgraphDocumentCache documents) {
+    CompletableFuture<JsonNode> targetFuture = fetchDocument(c, targetId, documents);
+    List<CompletableFuture<JsonNode>> sourceFutures = new ArrayList<>();
+    for (InclusionSubgraphUpdate update : updates) {
+      sourceFutures.add(fetchDocument(c, update.getSourceId(), documents));
+    }
+    List<CompletableFuture<JsonNode>> allFutures = new ArrayList<>(sourceFutures);
+    allFutures.add(targetFuture);
+    return CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[0])).thenCompose(v -> {
+      JsonNode targetJsonNode = targetFuture.join();
+      for (int i = 0; i < updates.size(); i++) {
+        InclusionSubgraphUtil.updateSubdocumentByAtId(targetJsonNode, updates.get(i).getSourceId(), sourceFutures.get(i).join());
+      }
+      String newTargetContent;
+      try {
+        newTargetContent = JsonMapper.MAPPER.writeValueAsString(targetJsonNode);
+      } catch (JsonProcessingException e) {
+        documents.invalidate(targetId);
+        throw new CompletionException(e);
+      }
+      return artifactServerClient.putAsync(getArtifactUrl(targetId), c, newTargetContent).thenAccept(putResponse -> {
+        int statusCode = putResponse.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_CREATED) {
+          throw new CompletionException(new CedarProcessingException("Artifact server returned status " + statusCode + " for " + targetId));
+        }
+      }).whenComplete((v, e) -> {
+        // The cached document was modified in place, it is only valid if it was stored
+        if (e == null) {
+          documents.update(targetId, targetJsonNode);
+        } else {
+          documents.invalidate(targetId);
+        }
+      });
+    });
+  }
+
+  private CompletableFuture<JsonNode> fetchDocument(CedarRequestContext c, String id, InclusionSubgraphDocumentCache documents) {
+    return documents.get(id, k -> artifactServerClient.getAsync(getArtifactUrl(id), c).thenApply(getResponse -> {
+      try {
+        return ArtifactServerUtil.readTree(getResponse.getEntity());
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }));
+  }
+
+  private String getArtifactUrl(String id) {
+    CedarTypedSchemaArtifactId artifactId = CedarResourceTypeUtil.buildTypedArtifactId(id);
+    return microserviceUrlUtil.getArtifact().getArtifactTypeWithId(artifactId.getType(), artifactId);
+  }
+}
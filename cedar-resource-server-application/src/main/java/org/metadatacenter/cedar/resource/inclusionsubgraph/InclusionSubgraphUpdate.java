@@ -0,0 +1,37 @@
+package org.metadatacenter.cedar.resource.inclusionsubgraph;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphTodoElement;
+import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphTodoList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InclusionSubgraphUpdate {
+
+  private final String sourceId;
+  private final String targetId;
+
+  @JsonCreator
+  public InclusionSubgraphUpdate(@JsonProperty("sourceId") String sourceId, @JsonProperty("targetId") String targetId) {
+    this.sourceId = sourceId;
+    this.targetId = targetId;
+  }
+
+  public static List<InclusionSubgraphUpdate> fromTodoList(InclusionSubgraphTodoList todoList) {
+    List<InclusionSubgraphUpdate> updates = new ArrayList<>();
+    for (InclusionSubgraphTodoElement todo : todoList.getTodoList()) {
+      updates.add(new InclusionSubgraphUpdate(todo.getSourceId(), todo.getTargetId()));
+    }
+    return updates;
+  }
+
+  public String getSourceId() {
+    return sourceId;
+  }
+
+  public String getTargetId() {
+    return targetId;
+  }
+}
@@ -0,0 +1,27 @@
+package org.metadatacenter.cedar.resource.indexing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class IncrementalReindexConfig {
+
+  @JsonProperty
+  private int workers = 4;
+
+  @JsonProperty
+  private int pageSize = 200;
+
+  @JsonProperty
+  private int partitionSize = 10000;
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public int getPartitionSize() {
+    return partitionSize;
+  }
+}
@@ -0,0 +1,578 @@
+package org.metadatacenter.cedar.resource.indexing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.resource.cluster.NodeHeartbeat;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.id.CedarCategoryId;
+import org.metadatacenter.id.CedarUntypedArtifactId;
+import org.metadatacenter.id.CedarUntypedFilesystemResourceId;
+import org.metadatacenter.model.CedarResourceType;
+import org.metadatacenter.model.folderserver.basic.FileSystemResource;
+import org.metadatacenter.model.folderserver.basic.FolderServerArtifact;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.model.folderserver.extract.FolderServerResourceExtract;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.CategoryServiceSession;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.server.ResourcePermissionServiceSession;
+import org.metadatacenter.server.search.elasticsearch.service.NodeIndexingService;
+import org.metadatacenter.server.security.model.auth.CedarNodePermissionsWithExtract;
+import org.metadatacenter.server.security.model.user.ResourcePublicationStatusFilter;
+import org.metadatacenter.server.security.model.user.ResourceVersionFilter;
+import org.metadatacenter.server.service.UserService;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reindexes every folder and artifact into the current search index, in place.
+ * <p>
+ * The resources of each type are split into partitions by creation time, and the partitions are processed by a pool
+ * of workers. The creation time and the ids of the last resources processed in each partition are stored in the
+ * persistent Redis after every page. The folder server only pages by offset, so the stored offset is just a hint: the
+ * page is read again from further back when resources deleted in the meantime moved the rows, and the rows up to the
+ * stored creation time are skipped.
+ * <p>
+ * A run is executed by the node holding the lease of the run, which it keeps refreshing. The other nodes take over a
+ * run left in progress once the lease expired, so a run interrupted by a shutdown is resumed by the next live node.
+ * <p>
+ * A fingerprint of the resource, its permissions, its parent folder and its categories is kept for every indexed
+ * document. Documents whose fingerprint did not change since the previous run are not rewritten. The fingerprints of a
+ * run are collected in a separate hash, which replaces the previous one once the run completes, so that deleted
+ * resources are dropped.
+ */
+public class IncrementalReindexService {
+
+  private static final Logger log = LoggerFactory.getLogger(IncrementalReindexService.class);
+
+  public enum Status {
+    RUNNING, COMPLETE, FAILED
+  }
+
+  private static final String STATE_KEY = "cedar-resource-server:incremental-reindex:state";
+  private static final String FINGERPRINTS_KEY = "cedar-resource-server:incremental-reindex:fingerprints";
+  private static final String NEXT_FINGERPRINTS_KEY = "cedar-resource-server:incremental-reindex:fingerprints:next";
+  private static final String LEASE_KEY = "cedar-resource-server:incremental-reindex:lease";
+  private static final String PARTITION_PREFIX = "partition:";
+
+  private static final String REFRESH_LEASE_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0";
+  private static final String RELEASE_LEASE_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0";
+  private static final long LEASE_CHECK_MILLIS = NodeHeartbeat.LEASE_MILLIS / 3;
+
+  private static final String FIELD_STATUS = "status";
+  private static final String FIELD_STARTED_AT = "startedAt";
+  private static final String FIELD_RESUMED_AT = "resumedAt";
+  private static final String FIELD_FINISHED_AT = "finishedAt";
+  private static final String FIELD_TOTAL = "total";
+  private static final String FIELD_INDEXED = "indexed";
+  private static final String FIELD_SKIPPED = "skipped";
+  private static final String FIELD_FAILED = "failed";
+  private static final String FIELD_PROCESSED_AT_RESUME = "processedAtResume";
+
+  private static final String CHECKPOINT_FROM = "from";
+  private static final String CHECKPOINT_TO = "to";
+  private static final String CHECKPOINT_OFFSET = "offset";
+  private static final String CHECKPOINT_LAST_ID = "lastId";
+  private static final String CHECKPOINT_CURSOR = "cursor";
+  private static final String CHECKPOINT_CURSOR_IDS = "cursorIds";
+  private static final String CHECKPOINT_DONE = "done";
+  private static final String CREATED_ON_TS = "createdOnTS";
+
+  private static final List<CedarResourceType> RESOURCE_TYPES = List.of(CedarResourceType.FOLDER,
+      CedarResourceType.FIELD, CedarResourceType.ELEMENT, CedarResourceType.TEMPLATE, CedarResourceType.INSTANCE);
+  private static final List<String> SORT = List.of(CREATED_ON_TS);
+
+  private record Row(String id, FileSystemResource resource, long createdOnTS) {
+  }
+
+  private final CedarConfig cedarConfig;
+  private final UserService userService;
+  private final JedisPool jedisPool;
+  private final NodeHeartbeat nodeHeartbeat;
+  private final NodeIndexingService nodeIndexingService;
+  private final IncrementalReindexConfig config;
+  private ExecutorService workers;
+  private ScheduledExecutorService leaseKeeper;
+  private volatile boolean running;
+
+  public IncrementalReindexService(CedarConfig cedarConfig, UserService userService, JedisPool jedisPool,
+                                   NodeHeartbeat nodeHeartbeat, NodeIndexingService nodeIndexingService,
+                                   IncrementalReindexConfig config) {
+    this.cedarConfig = cedarConfig;
+    this.userService = userService;
+    this.jedisPool = jedisPool;
+    this.nodeHeartbeat = nodeHeartbeat;
+    this.nodeIndexingService = nodeIndexingService;
+    this.config = config;
+  }
+
+  // Returns false if a run is already in progress on any node. With force, every document is rewritten.
+  // The partitions are computed before the lease is taken, as this reads the folder server for a while and the lease
+  // is only refreshed for a run of this node.
+  public boolean start(boolean force) throws CedarException {
+    if (isInProgress()) {
+      return false;
+    }
+    Map<String, String> state = new HashMap<>();
+    long total = 0;
+    CedarRequestContext c = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    for (CedarResourceType resourceType : RESOURCE_TYPES) {
+      long count = folderSession.viewAllCount(List.of(resourceType), ResourceVersionFilter.ALL,
+          ResourcePublicationStatusFilter.ALL);
+      addPartitions(state, folderSession, resourceType, count);
+      total += count;
+    }
+    synchronized (this) {
+      if (running || !acquireLease()) {
+        return false;
+      }
+      startRun(state, total, force);
+    }
+    return true;
+  }
+
+  private void startRun(Map<String, String> state, long total, boolean force) {
+    String now = Instant.now().toString();
+    state.put(FIELD_STATUS, Status.RUNNING.name());
+    state.put(FIELD_STARTED_AT, now);
+    state.put(FIELD_RESUMED_AT, now);
+    state.put(FIELD_TOTAL, String.valueOf(total));
+    state.put(FIELD_INDEXED, "0");
+    state.put(FIELD_SKIPPED, "0");
+    state.put(FIELD_FAILED, "0");
+    state.put(FIELD_PROCESSED_AT_RESUME, "0");
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(STATE_KEY, NEXT_FINGERPRINTS_KEY);
+      if (force) {
+        jedis.del(FINGERPRINTS_KEY);
+      }
+      jedis.hset(STATE_KEY, state);
+    }
+    runPartitions(state);
+  }
+
+  // A run left in progress by a stopped node counts too, it is resumed by another node
+  public boolean isInProgress() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return Status.RUNNING.name().equals(jedis.hget(STATE_KEY, FIELD_STATUS));
+    }
+  }
+
+  // Called on startup. Refreshes the lease of the run of this node, and resumes a run whose lease expired.
+  public void resume() {
+    leaseKeeper = Executors.newSingleThreadScheduledExecutor();
+    leaseKeeper.scheduleWithFixedDelay(this::maintainLease, 0, LEASE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() throws InterruptedException {
+    leaseKeeper.shutdownNow();
+    synchronized (this) {
+      if (!running) {
+        return;
+      }
+      // The stored state stays RUNNING, so that the run is taken over by another node once the lease is released
+      running = false;
+      workers.shutdown();
+      workers.awaitTermination(1, TimeUnit.MINUTES);
+      releaseLease();
+    }
+  }
+
+  // The search index was rebuilt or emptied by other means, the stored fingerprints do not describe it anymore
+  public void clearFingerprints() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(FINGERPRINTS_KEY, NEXT_FINGERPRINTS_KEY);
+    }
+  }
+
+  public ObjectNode getStatus() {
+    Map<String, String> state;
+    try (Jedis jedis = jedisPool.getResource()) {
+      state = jedis.hgetAll(STATE_KEY);
+    }
+    if (state == null || state.isEmpty()) {
+      return null;
+    }
+    long total = longValue(state, FIELD_TOTAL);
+    long indexed = longValue(state, FIELD_INDEXED);
+    long skipped = longValue(state, FIELD_SKIPPED);
+    long failed = longValue(state, FIELD_FAILED);
+    ObjectNode status = JsonMapper.MAPPER.createObjectNode();
+    status.put(FIELD_STATUS, state.get(FIELD_STATUS));
+    status.put(FIELD_STARTED_AT, state.get(FIELD_STARTED_AT));
+    status.put(FIELD_FINISHED_AT, state.get(FIELD_FINISHED_AT));
+    status.put(FIELD_TOTAL, total);
+    status.put(FIELD_INDEXED, indexed);
+    status.put(FIELD_SKIPPED, skipped);
+    status.put(FIELD_FAILED, failed);
+    // The rate only covers the current process, the documents indexed before a restart are not counted
+    String end = state.get(FIELD_FINISHED_AT) != null ? state.get(FIELD_FINISHED_AT) : Instant.now().toString();
+    long millis = Duration.between(Instant.parse(state.get(FIELD_RESUMED_AT)), Instant.parse(end)).toMillis();
+    long processedSinceResume = indexed + skipped - longValue(state, FIELD_PROCESSED_AT_RESUME);
+    double docsPerSecond = millis > 0 ? processedSinceResume * 1000.0 / millis : 0;
+    status.put("docsPerSecond", Math.round(docsPerSecond * 10) / 10.0);
+    if (Status.RUNNING.name().equals(state.get(FIELD_STATUS)) && docsPerSecond > 0) {
+      long remaining = Math.max(total - indexed - skipped - failed, 0);
+      status.put("etaSeconds", Math.round(remaining / docsPerSecond));
+    }
+    return status;
+  }
+
+  private synchronized void maintainLease() {
+    try {
+      if (running) {
+        if (!refreshLease()) {
+          // Another node took the run over, the workers stop after their current page
+          log.error("Lost the lease of the incremental reindex, stopping the workers of this node");
+          running = false;
+          workers.shutdown();
+        }
+        return;
+      }
+      resumeAbandonedRun();
+    } catch (Exception e) {
+      log.error("Error while maintaining the lease of the incremental reindex", e);
+    }
+  }
+
+  private void resumeAbandonedRun() {
+    Map<String, String> state;
+    try (Jedis jedis = jedisPool.getResource()) {
+      state = jedis.hgetAll(STATE_KEY);
+      if (!Status.RUNNING.name().equals(state.get(FIELD_STATUS)) || !acquireLease(jedis)) {
+        return;
+      }
+      Map<String, String> fields = new HashMap<>();
+      fields.put(FIELD_RESUMED_AT, Instant.now().toString());
+      fields.put(FIELD_PROCESSED_AT_RESUME,
+          String.valueOf(longValue(state, FIELD_INDEXED) + longValue(state, FIELD_SKIPPED)));
+      jedis.hset(STATE_KEY, fields);
+    }
+    log.info("Resuming interrupted incremental reindex, indexed so far: " + state.get(FIELD_INDEXED));
+    runPartitions(state);
+  }
+
+  private boolean acquireLease() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return acquireLease(jedis);
+    }
+  }
+
+  private boolean acquireLease(Jedis jedis) {
+    return "OK".equals(jedis.set(LEASE_KEY, nodeHeartbeat.getNodeId(),
+        SetParams.setParams().nx().px(NodeHeartbeat.LEASE_MILLIS)));
+  }
+
+  private boolean refreshLease() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      Object refreshed = jedis.eval(REFRESH_LEASE_SCRIPT, List.of(LEASE_KEY),
+          List.of(nodeHeartbeat.getNodeId(), String.valueOf(NodeHeartbeat.LEASE_MILLIS)));
+      return Long.valueOf(1).equals(refreshed);
+    }
+  }
+
+  private void releaseLease() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.eval(RELEASE_LEASE_SCRIPT, List.of(LEASE_KEY), List.of(nodeHeartbeat.getNodeId()));
+    }
+  }
+
+  // The partition bounds are the creation times of every partitionSize-th resource, so that they do not move when
+  // resources are deleted during the run. Resources created later fall into the last partition, which is open-ended.
+  private void addPartitions(Map<String, String> state, FolderServiceSession folderSession,
+                             CedarResourceType resourceType, long count) throws CedarException {
+    List<Long> froms = new ArrayList<>();
+    List<Long> offsets = new ArrayList<>();
+    froms.add(Long.MIN_VALUE);
+    offsets.add(0L);
+    for (long start = config.getPartitionSize(); start < count; start += config.getPartitionSize()) {
+      List<FolderServerResourceExtract> first = folderSession.viewAll(List.of(resourceType), ResourceVersionFilter.ALL,
+          ResourcePublicationStatusFilter.ALL, 1, (int) start, SORT);
+      if (first.isEmpty()) {
+        break;
+      }
+      FileSystemResource resource = folderSession.findResourceById(
+          CedarUntypedFilesystemResourceId.build(first.get(0).getId()));
+      // Equal creation times at a bound would make an empty partition
+      if (resource != null && createdOnTS(resource) > froms.get(froms.size() - 1)) {
+        froms.add(createdOnTS(resource));
+        offsets.add(start);
+      }
+    }
+    for (int i = 0; i < froms.size(); i++) {
+      ObjectNode checkpoint = JsonMapper.MAPPER.createObjectNode();
+      checkpoint.put(CHECKPOINT_FROM, froms.get(i));
+      checkpoint.put(CHECKPOINT_TO, i + 1 < froms.size() ? froms.get(i + 1) : Long.MAX_VALUE);
+      checkpoint.put(CHECKPOINT_OFFSET, offsets.get(i));
+      checkpoint.put(CHECKPOINT_DONE, false);
+      state.put(PARTITION_PREFIX + resourceType.getValue() + ":" + i, checkpoint.toString());
+    }
+  }
+
+  private void runPartitions(Map<String, String> state) {
+    Map<String, ObjectNode> partitions = new HashMap<>();
+    try {
+      for (Map.Entry<String, String> entry : state.entrySet()) {
+        if (entry.getKey().startsWith(PARTITION_PREFIX)) {
+          ObjectNode checkpoint = (ObjectNode) JsonMapper.MAPPER.readTree(entry.getValue());
+          if (!checkpoint.get(CHECKPOINT_DONE).asBoolean()) {
+            partitions.put(entry.getKey(), checkpoint);
+          }
+        }
+      }
+    } catch (Exception e) {
+      // Checkpoints stored by an earlier version of the service, the run has to be started again
+      log.error("The incremental reindex state can not be read, marking the run as failed", e);
+      try (Jedis jedis = jedisPool.getResource()) {
+        jedis.hset(STATE_KEY, FIELD_STATUS, Status.FAILED.name());
+      }
+      releaseLease();
+      return;
+    }
+    running = true;
+    workers = Executors.newFixedThreadPool(config.getWorkers());
+    List<Future<?>> futures = new ArrayList<>();
+    for (Map.Entry<String, ObjectNode> partition : partitions.entrySet()) {
+      futures.add(workers.submit(() -> reindexPartition(partition.getKey(), partition.getValue())));
+    }
+    Thread completion = new Thread(() -> awaitCompletion(futures), "incremental-reindex-completion");
+    completion.setDaemon(true);
+    completion.start();
+  }
+
+  private void awaitCompletion(List<Future<?>> futures) {
+    boolean failed = false;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Incremental reindex partition failed", e);
+        failed = true;
+      }
+    }
+    synchronized (this) {
+      // Stopped by a shutdown or taken over by another node, the run is resumed there
+      if (!running) {
+        return;
+      }
+      running = false;
+      workers.shutdown();
+      Map<String, String> fields = new HashMap<>();
+      fields.put(FIELD_STATUS, failed ? Status.FAILED.name() : Status.COMPLETE.name());
+      fields.put(FIELD_FINISHED_AT, Instant.now().toString());
+      try (Jedis jedis = jedisPool.getResource()) {
+        jedis.hset(STATE_KEY, fields);
+        if (!failed) {
+          if (jedis.exists(NEXT_FINGERPRINTS_KEY)) {
+            jedis.rename(NEXT_FINGERPRINTS_KEY, FINGERPRINTS_KEY);
+          } else {
+            jedis.del(FINGERPRINTS_KEY);
+          }
+        }
+      }
+      releaseLease();
+      log.info("Incremental reindex finished: " + fields.get(FIELD_STATUS));
+    }
+  }
+
+  private void reindexPartition(String partition, ObjectNode checkpoint) throws CedarException {
+    CedarResourceType resourceType = CedarResourceType.forValue(partition.substring(PARTITION_PREFIX.length(),
+        partition.lastIndexOf(':')));
+    long from = checkpoint.get(CHECKPOINT_FROM).asLong();
+    long to = checkpoint.get(CHECKPOINT_TO).asLong();
+    long offset = checkpoint.get(CHECKPOINT_OFFSET).asLong();
+    String lastId = checkpoint.hasNonNull(CHECKPOINT_LAST_ID) ? checkpoint.get(CHECKPOINT_LAST_ID).asText() : null;
+    Long cursor = checkpoint.hasNonNull(CHECKPOINT_CURSOR) ? checkpoint.get(CHECKPOINT_CURSOR).asLong() : null;
+    Set<String> cursorIds = new HashSet<>();
+    if (checkpoint.has(CHECKPOINT_CURSOR_IDS)) {
+      checkpoint.get(CHECKPOINT_CURSOR_IDS).forEach(id -> cursorIds.add(id.asText()));
+    }
+    // Every page starts with the last row of the previous one, so a page of two rows is the least that moves on
+    int limit = Math.max(2, config.getPageSize());
+    CedarRequestContext c = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(c);
+    CategoryServiceSession categorySession = CedarDataServices.getCategoryServiceSession(c);
+    boolean done = false;
+    while (running && !done) {
+      List<FolderServerResourceExtract> page = folderSession.viewAll(List.of(resourceType), ResourceVersionFilter.ALL,
+          ResourcePublicationStatusFilter.ALL, limit, (int) offset, SORT);
+      List<Row> rows = readRows(folderSession, page);
+      // Unless the page starts at the last row read, it is read from further back until it starts before the cursor, as
+      // rows were deleted before it or have the same creation time as the cursor
+      boolean aligned = !page.isEmpty() && page.get(0).getId().equals(lastId);
+      long readUpTo = cursor != null ? cursor : from;
+      if (offset > 0 && !aligned && (rows.isEmpty() || rows.get(0).createdOnTS() >= readUpTo)) {
+        offset = Math.max(0, offset - limit);
+        lastId = null;
+        continue;
+      }
+      String[] ids = rows.stream().map(Row::id).toArray(String[]::new);
+      List<String> previousFingerprints = List.of();
+      if (ids.length > 0) {
+        try (Jedis jedis = jedisPool.getResource()) {
+          previousFingerprints = jedis.hmget(FINGERPRINTS_KEY, ids);
+        }
+      }
+      Map<String, String> fingerprints = new HashMap<>();
+      long indexed = 0;
+      long skipped = 0;
+      long failed = 0;
+      for (int i = 0; i < rows.size(); i++) {
+        Row row = rows.get(i);
+        long ts = row.createdOnTS();
+        if (ts >= to) {
+          done = true;
+          break;
+        }
+        if (ts < from || (cursor != null && (ts < cursor || (ts == cursor && cursorIds.contains(row.id()))))) {
+          continue;
+        }
+        try {
+          CedarUntypedFilesystemResourceId resourceId = CedarUntypedFilesystemResourceId.build(row.id());
+          String fingerprint = fingerprint(row.resource(), permissionSession.getResourcePermissions(resourceId),
+              parentFolderId(folderSession, resourceId), categoryIds(categorySession, row.resource()));
+          if (!fingerprint.equals(previousFingerprints.get(i))) {
+            reindex(c, resourceId, row.resource());
+            indexed++;
+          } else {
+            skipped++;
+          }
+          fingerprints.put(row.id(), fingerprint);
+        } catch (Exception e) {
+          log.error("Error while reindexing " + row.id(), e);
+          failed++;
+        }
+        if (cursor == null || ts > cursor) {
+          cursor = ts;
+          cursorIds.clear();
+        }
+        cursorIds.add(row.id());
+      }
+      if (page.size() < limit) {
+        done = true;
+      }
+      if (!page.isEmpty()) {
+        offset += page.size() - 1;
+        lastId = page.get(page.size() - 1).getId();
+      }
+      checkpoint.put(CHECKPOINT_OFFSET, offset);
+      checkpoint.put(CHECKPOINT_LAST_ID, lastId);
+      if (cursor != null) {
+        checkpoint.put(CHECKPOINT_CURSOR, cursor);
+        cursorIds.forEach(checkpoint.putArray(CHECKPOINT_CURSOR_IDS)::add);
+      }
+      checkpoint.put(CHECKPOINT_DONE, done);
+      try (Jedis jedis = jedisPool.getResource()) {
+        if (!fingerprints.isEmpty()) {
+          jedis.hset(NEXT_FINGERPRINTS_KEY, fingerprints);
+        }
+        jedis.hset(STATE_KEY, partition, checkpoint.toString());
+        jedis.hincrBy(STATE_KEY, FIELD_INDEXED, indexed);
+        jedis.hincrBy(STATE_KEY, FIELD_SKIPPED, skipped);
+        jedis.hincrBy(STATE_KEY, FIELD_FAILED, failed);
+      }
+    }
+  }
+
+  // Resources deleted since the page was listed are left out
+  private static List<Row> readRows(FolderServiceSession folderSession, List<FolderServerResourceExtract> page)
+      throws CedarException {
+    List<Row> rows = new ArrayList<>();
+    for (FolderServerResourceExtract extract : page) {
+      FileSystemResource resource = folderSession.findResourceById(
+          CedarUntypedFilesystemResourceId.build(extract.getId()));
+      if (resource != null) {
+        rows.add(new Row(extract.getId(), resource, createdOnTS(resource)));
+      }
+    }
+    return rows;
+  }
+
+  private static long createdOnTS(FileSystemResource resource) throws CedarProcessingException {
+    JsonNode createdOnTS = JsonMapper.MAPPER.<JsonNode>valueToTree(resource).get(CREATED_ON_TS);
+    if (createdOnTS == null || !createdOnTS.canConvertToLong()) {
+      throw new CedarProcessingException("The resource has no creation time: " + resource.getId());
+    }
+    return createdOnTS.asLong();
+  }
+
+  private void reindex(CedarRequestContext c, CedarUntypedFilesystemResourceId resourceId, FileSystemResource resource)
+      throws CedarException {
+    if (resource instanceof FolderServerArtifact artifact) {
+      nodeIndexingService.removeDocumentFromIndex(resourceId);
+      nodeIndexingService.indexDocument(artifact, c);
+    } else if (resource instanceof FolderServerFolder folder) {
+      nodeIndexingService.removeDocumentFromIndex(resourceId);
+      nodeIndexingService.indexDocument(folder, c);
+    }
+  }
+
+  // The resource node carries the name, description, identifier, version info, source hash and last update time of
+  // the indexed content, the permissions carry the users and groups of the search document. The parent folder and the
+  // attached categories are also part of the search document, but are edges of the node.
+  private static String fingerprint(FileSystemResource resource, CedarNodePermissionsWithExtract permissions,
+                                    String parentFolderId, List<String> categoryIds) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update(JsonMapper.MAPPER.writeValueAsString(resource).getBytes(StandardCharsets.UTF_8));
+    digest.update(JsonMapper.MAPPER.writeValueAsString(permissions).getBytes(StandardCharsets.UTF_8));
+    digest.update(JsonMapper.MAPPER.writeValueAsString(parentFolderId).getBytes(StandardCharsets.UTF_8));
+    digest.update(JsonMapper.MAPPER.writeValueAsString(categoryIds).getBytes(StandardCharsets.UTF_8));
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static String parentFolderId(FolderServiceSession folderSession, CedarUntypedFilesystemResourceId resourceId) {
+    FolderServerFolder parentFolder = folderSession.getParentFolder(resourceId);
+    return parentFolder != null ? parentFolder.getId() : null;
+  }
+
+  // Sorted, the order of the edges does not change the document
+  private static List<String> categoryIds(CategoryServiceSession categorySession, FileSystemResource resource) {
+    List<String> categoryIds = new ArrayList<>();
+    if (resource instanceof FolderServerArtifact) {
+      for (CedarCategoryId categoryId : categorySession.getAttachedCategoryIds(
+          CedarUntypedArtifactId.build(resource.getId()))) {
+        categoryIds.add(categoryId.getId());
+      }
+      Collections.sort(categoryIds);
+    }
+    return categoryIds;
+  }
+
+  private static long longValue(Map<String, String> state, String field) {
+    String value = state.get(field);
+    return value != null ? Long.parseLong(value) : 0;
+  }
+}
@@ -0,0 +1,266 @@
+package org.metadatacenter.cedar.resource.indexing;
+
+import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.resource.cluster.NodeHeartbeat;
+import org.metadatacenter.config.CedarConfig;
+import org.metadatacenter.id.CedarFilesystemResourceId;
+import org.metadatacenter.id.CedarUntypedFilesystemResourceId;
+import org.metadatacenter.model.folderserver.basic.FileSystemResource;
+import org.metadatacenter.model.folderserver.basic.FolderServerArtifact;
+import org.metadatacenter.model.folderserver.basic.FolderServerFolder;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.metadatacenter.rest.context.CedarRequestContextFactory;
+import org.metadatacenter.server.FolderServiceSession;
+import org.metadatacenter.server.search.elasticsearch.service.NodeIndexingService;
+import org.metadatacenter.server.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Search index writes taken off the request path.
+ * <p>
+ * Pending operations are kept by resource id, so that several changes of the same resource between two flushes
+ * result in a single index write. An indexed document is built from the state of the resource at flush time. The
+ * pending operations are also stored in a hash in the persistent Redis, shared by all nodes.
+ * <p>
+ * A stored operation holds the {@link NodeHeartbeat} id of the node that enqueued it, and only that node applies it.
+ * Operations left behind by a node whose heartbeat expired are claimed one by one, by replacing the owner in the
+ * stored value only if the value is unchanged, and are then applied by the node that claimed them.
+ * <p>
+ * Every enqueued operation gets a version, stored with it. An operation is only dropped, locally and from Redis, if
+ * its version is still the stored one once it was applied, so a change enqueued meanwhile is kept. A failed
+ * operation stays pending, and is retried with an exponential backoff.
+ */
+public class IndexingOutbox {
+
+  private static final Logger log = LoggerFactory.getLogger(IndexingOutbox.class);
+
+  public enum Operation {
+    INDEX, REMOVE
+  }
+
+  private static final String PENDING_KEY = "cedar-resource-server:indexing-outbox:pending";
+
+  // Deletes the field only if it still holds the given value
+  private static final String COMPARE_AND_DELETE_SCRIPT =
+      "if redis.call('hget', KEYS[1], ARGV[1]) == ARGV[2] then return redis.call('hdel', KEYS[1], ARGV[1]) end "
+          + "return 0";
+
+  // Replaces the field only if it still holds the given value
+  private static final String COMPARE_AND_SET_SCRIPT =
+      "if redis.call('hget', KEYS[1], ARGV[1]) == ARGV[2] then redis.call('hset', KEYS[1], ARGV[1], ARGV[3]) "
+          + "return 1 end return 0";
+
+  private static class Pending {
+    private final Operation operation;
+    private final String storedValue;
+    private final int attempts;
+    private final long notBefore;
+
+    private Pending(Operation operation, String storedValue, int attempts, long notBefore) {
+      this.operation = operation;
+      this.storedValue = storedValue;
+      this.attempts = attempts;
+      this.notBefore = notBefore;
+    }
+
+    private static Pending fromStoredValue(String storedValue) {
+      return new Pending(Operation.valueOf(storedValue.split(":", 3)[0]), storedValue, 0, 0);
+    }
+  }
+
+  // Stored values are the operation, the version and the owner node, separated by colons
+  private static String buildStoredValue(Operation operation, String version, String nodeId) {
+    return operation.name() + ":" + version + ":" + nodeId;
+  }
+
+  private static String ownerOf(String storedValue) {
+    String[] parts = storedValue.split(":", 3);
+    return parts.length == 3 ? parts[2] : null;
+  }
+
+  private final CedarConfig cedarConfig;
+  private final UserService userService;
+  private final JedisPool jedisPool;
+  private final NodeHeartbeat nodeHeartbeat;
+  private final NodeIndexingService nodeIndexingService;
+  private final IndexingOutboxConfig config;
+  private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+  private final Object flushSignal = new Object();
+  private Thread flusher;
+  private volatile boolean running;
+  private long nextClaimAt;
+
+  public IndexingOutbox(CedarConfig cedarConfig, UserService userService, JedisPool jedisPool,
+                        NodeHeartbeat nodeHeartbeat, NodeIndexingService nodeIndexingService,
+                        IndexingOutboxConfig config) {
+    this.cedarConfig = cedarConfig;
+    this.userService = userService;
+    this.jedisPool = jedisPool;
+    this.nodeHeartbeat = nodeHeartbeat;
+    this.nodeIndexingService = nodeIndexingService;
+    this.config = config;
+  }
+
+  public void enqueue(CedarFilesystemResourceId resourceId, Operation operation) {
+    String id = resourceId.getId();
+    String storedValue = buildStoredValue(operation, UUID.randomUUID().toString(), nodeHeartbeat.getNodeId());
+    pending.put(id, new Pending(operation, storedValue, 0, 0));
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.hset(PENDING_KEY, id, storedValue);
+    } catch (Exception e) {
+      log.error("Error while storing pending index operation for " + id, e);
+    }
+    if (pending.size() >= config.getBatchSize()) {
+      synchronized (flushSignal) {
+        flushSignal.notifyAll();
+      }
+    }
+  }
+
+  public void start() {
+    claimOperationsOfStoppedNodes();
+    running = true;
+    flusher = new Thread(this::work, "indexing-outbox");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  // Operations still failing are left in Redis, and are claimed by another node once the heartbeat of this one expired
+  public void stop() throws InterruptedException {
+    running = false;
+    synchronized (flushSignal) {
+      flushSignal.notifyAll();
+    }
+    flusher.join();
+    flush();
+  }
+
+  // A flush goes on until no operation is ready, the operations waiting for a retry do not shorten the wait
+  private void work() {
+    while (running) {
+      synchronized (flushSignal) {
+        try {
+          flushSignal.wait(config.getFlushIntervalMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      if (System.currentTimeMillis() >= nextClaimAt) {
+        claimOperationsOfStoppedNodes();
+      }
+      try {
+        flush();
+      } catch (Exception e) {
+        log.error("Error while flushing the indexing outbox", e);
+      }
+    }
+  }
+
+  private void claimOperationsOfStoppedNodes() {
+    nextClaimAt = System.currentTimeMillis() + NodeHeartbeat.LEASE_MILLIS;
+    String nodeId = nodeHeartbeat.getNodeId();
+    Map<String, Boolean> aliveByNode = new HashMap<>();
+    int claimed = 0;
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (Map.Entry<String, String> entry : jedis.hgetAll(PENDING_KEY).entrySet()) {
+        String id = entry.getKey();
+        String storedValue = entry.getValue();
+        String owner = ownerOf(storedValue);
+        if (owner == null) {
+          log.warn("Dropping malformed pending index operation for " + id + ": " + storedValue);
+          jedis.eval(COMPARE_AND_DELETE_SCRIPT, List.of(PENDING_KEY), List.of(id, storedValue));
+          continue;
+        }
+        if (owner.equals(nodeId) || aliveByNode.computeIfAbsent(owner, nodeHeartbeat::isAlive)) {
+          continue;
+        }
+        String[] parts = storedValue.split(":", 3);
+        String claimedValue = buildStoredValue(Operation.valueOf(parts[0]), parts[1], nodeId);
+        Object result = jedis.eval(COMPARE_AND_SET_SCRIPT, List.of(PENDING_KEY), List.of(id, storedValue, claimedValue));
+        if (Long.valueOf(1).equals(result)) {
+          pending.putIfAbsent(id, Pending.fromStoredValue(claimedValue));
+          claimed++;
+        }
+      }
+    } catch (Exception e) {
+      log.error("Error while claiming the pending index operations of stopped nodes", e);
+    }
+    if (claimed > 0) {
+      log.info("Claimed " + claimed + " pending index operations of stopped nodes");
+    }
+  }
+
+  private void flush() {
+    while (true) {
+      long now = System.currentTimeMillis();
+      List<String> batch = new ArrayList<>();
+      for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+        if (entry.getValue().notBefore <= now) {
+          batch.add(entry.getKey());
+          if (batch.size() >= config.getBatchSize()) {
+            break;
+          }
+        }
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      CedarRequestContext cedarAdminRequestContext;
+      try {
+        cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+      } catch (Exception e) {
+        log.error("Error while building the admin context for the indexing outbox", e);
+        return;
+      }
+      FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(cedarAdminRequestContext);
+      for (String id : batch) {
+        Pending operation = pending.get(id);
+        if (operation == null) {
+          continue;
+        }
+        if (apply(cedarAdminRequestContext, folderSession, id, operation.operation)) {
+          // A change enqueued meanwhile replaced the operation, both locally and in Redis, and is kept
+          if (pending.remove(id, operation)) {
+            try (Jedis jedis = jedisPool.getResource()) {
+              jedis.eval(COMPARE_AND_DELETE_SCRIPT, List.of(PENDING_KEY), List.of(id, operation.storedValue));
+            }
+          }
+        } else {
+          int attempts = operation.attempts + 1;
+          long delay = Math.min(config.getRetryMaxMillis(),
+              config.getRetryBaseMillis() * (1L << Math.min(attempts - 1, 20)));
+          pending.replace(id, operation,
+              new Pending(operation.operation, operation.storedValue, attempts, System.currentTimeMillis() + delay));
+        }
+      }
+    }
+  }
+
+  private boolean apply(CedarRequestContext c, FolderServiceSession folderSession, String id, Operation operation) {
+    CedarUntypedFilesystemResourceId resourceId = CedarUntypedFilesystemResourceId.build(id);
+    try {
+      FileSystemResource resource = operation == Operation.INDEX ? folderSession.findResourceById(resourceId) : null;
+      nodeIndexingService.removeDocumentFromIndex(resourceId);
+      if (resource instanceof FolderServerArtifact artifact) {
+        nodeIndexingService.indexDocument(artifact, c);
+      } else if (resource instanceof FolderServerFolder folder) {
+        nodeIndexingService.indexDocument(folder, c);
+      }
+      return true;
+    } catch (Exception e) {
+      log.error("Error while applying index operation " + operation + " for " + id + ", it will be retried", e);
+      return false;
+    }
+  }
+}
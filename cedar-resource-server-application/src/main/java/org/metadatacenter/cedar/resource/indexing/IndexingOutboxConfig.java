@@ -0,0 +1,41 @@
+package org.metadatacenter.cedar.resource.indexing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class IndexingOutboxConfig {
+
+  @JsonProperty
+  private boolean enabled = false;
+
+  @JsonProperty
+  private int flushIntervalMillis = 1000;
+
+  @JsonProperty
+  private int batchSize = 500;
+
+  @JsonProperty
+  private long retryBaseMillis = 1000;
+
+  @JsonProperty
+  private long retryMaxMillis = 300000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getFlushIntervalMillis() {
+    return flushIntervalMillis;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getRetryBaseMillis() {
+    return retryBaseMillis;
+  }
+
+  public long getRetryMaxMillis() {
+    return retryMaxMillis;
+  }
+}
@@ -11,10 +11,16 @@ import org.apache.http.util.EntityUtils;
 import org.metadatacenter.bridge.CedarDataServices;
 import org.metadatacenter.bridge.GraphDbPermissionReader;
 import org.metadatacenter.bridge.PathInfoBuilder;
+import org.metadatacenter.cedar.artifact.ArtifactServerClient;
 import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
+import org.metadatacenter.cedar.resource.cache.FolderContentsCountCache;
+import org.metadatacenter.cedar.resource.cache.RequestPermissionCache;
+import org.metadatacenter.cedar.resource.cache.TemplateSchemaArtifactCache;
+import org.metadatacenter.cedar.resource.indexing.IndexingOutbox;
 import org.metadatacenter.cedar.util.dw.CedarMicroserviceResource;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.constant.HttpConstants;
+import org.metadatacenter.constant.LinkedData;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.*;
 import org.metadatacenter.http.CedarResponseStatus;
@@ -71,6 +77,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.metadatacenter.constant.CedarQueryParameters.QP_FOLDER_ID;
 import static org.metadatacenter.model.ModelNodeNames.SCHEMA_ORG_DESCRIPTION;
@@ -85,6 +93,11 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   protected static NodeSearchingService nodeSearchingService;
   protected static SearchPermissionEnqueueService searchPermissionEnqueueService;
   protected static ValuerecommenderReindexQueueService valuerecommenderReindexQueueService;
+  protected static ArtifactServerClient artifactServerClient;
+  protected static IndexingOutbox indexingOutbox;
+  protected static final FolderContentsCountCache folderContentsCountCache = new FolderContentsCountCache();
+  protected static final RequestPermissionCache requestPermissionCache = new RequestPermissionCache();
+  protected static final TemplateSchemaArtifactCache templateSchemaArtifactCache = new TemplateSchemaArtifactCache();
 
   protected AbstractResourceServerResource(CedarConfig cedarConfig) {
     super(cedarConfig);
@@ -100,6 +113,15 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
     AbstractResourceServerResource.valuerecommenderReindexQueueService = valuerecommenderReindexQueueService;
   }
 
+  public static void injectArtifactServerClient(ArtifactServerClient artifactServerClient) {
+    AbstractResourceServerResource.artifactServerClient = artifactServerClient;
+  }
+
+  // Null if index writes are done within the request
+  public static void injectIndexingOutbox(IndexingOutbox indexingOutbox) {
+    AbstractResourceServerResource.indexingOutbox = indexingOutbox;
+  }
+
   protected static <T extends FileSystemResource> T deserializeResource(HttpResponse proxyResponse, Class<T> klazz) throws CedarProcessingException {
     T resource = null;
     try {
@@ -185,11 +207,11 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
       if (artifactId.isEmpty()) {
         // Create by POST, empty @id
         url = microserviceUrlUtil.getArtifact().getResourceType(resourceType);
-        templateProxyResponse = ProxyUtil.proxyPost(url, context, content);
+        templateProxyResponse = artifactServerClient.post(url, context, content);
       } else {
         // Create by PUT, filled @id
         url = microserviceUrlUtil.getArtifact().getArtifactTypeWithId(resourceType, artifactId.get(), Optional.empty());
-        templateProxyResponse = ProxyUtil.proxyPut(url, context, content);
+        templateProxyResponse = artifactServerClient.put(url, context, content);
       }
       ProxyUtil.proxyResponseHeaders(templateProxyResponse, response);
 
@@ -201,8 +223,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
         // artifact was created
         HttpEntity templateProxyResponseEntity = templateProxyResponse.getEntity();
         if (templateProxyResponseEntity != null) {
-          String templateEntityContent = EntityUtils.toString(templateProxyResponseEntity, CharEncoding.UTF_8);
-          JsonNode templateJsonNode = JsonMapper.MAPPER.readTree(templateEntityContent);
+          JsonNode templateJsonNode = ArtifactServerUtil.readTree(templateProxyResponseEntity);
           String id = ModelUtil.extractAtIdFromResource(resourceType, templateJsonNode).getValue();
           CedarArtifactId aid = CedarArtifactId.build(id, resourceType);
 
@@ -285,6 +306,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
                 .errorMessage("The artifact was not created!")
                 .build();
           }
+          folderContentsCountCache.invalidate(fid);
           UriBuilder builder = uriInfo.getAbsolutePathBuilder();
           URI uri = builder.path(CedarUrlUtil.urlEncode(id)).build();
           updateInclusionSubgraphIfNeeded(context, newResource, templateJsonNode);
@@ -346,7 +368,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
 
     if (folderServerOldResource != null) {
       userMustHaveWriteAccessToArtifact(context, id);
-      return executeResourceUpdateOnArtifactServerAndGraphDb(context, resourceType, id, content);
+      return executeResourceUpdateOnArtifactServerAndGraphDb(context, resourceType, id, content, folderServerOldResource);
     } else {
       return executeResourceCreationOnArtifactServerAndGraphDb(context, resourceType, Optional.of(id.getId()), folderId, content);
     }
@@ -355,7 +377,12 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   protected Response executeResourceUpdateOnArtifactServerAndGraphDb(CedarRequestContext context, CedarResourceType resourceType, CedarArtifactId id, String content) throws CedarException {
     FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(context);
     FolderServerArtifact folderServerOldResource = folderSession.findArtifactById(id);
+    return executeResourceUpdateOnArtifactServerAndGraphDb(context, resourceType, id, content, folderServerOldResource);
+  }
 
+  // The artifact, as loaded by the caller, is used for the whole update
+  protected Response executeResourceUpdateOnArtifactServerAndGraphDb(CedarRequestContext context, CedarResourceType resourceType, CedarArtifactId id, String content,
+                                                                     FolderServerArtifact folderServerOldResource) throws CedarException {
     if (folderServerOldResource == null) {
       return CedarResponse.notFound()
           .errorKey(CedarErrorKey.ARTIFACT_NOT_FOUND)
@@ -394,7 +421,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
     try {
       String url = microserviceUrlUtil.getArtifact().getArtifactTypeWithId(resourceType, id);
 
-      HttpResponse templateProxyResponse = ProxyUtil.proxyPut(url, context, content);
+      HttpResponse templateProxyResponse = artifactServerClient.put(url, context, content);
       ProxyUtil.proxyResponseHeaders(templateProxyResponse, response);
       int statusCode = templateProxyResponse.getStatusLine().getStatusCode();
       if (statusCode != HttpConstants.CREATED && statusCode != HttpConstants.OK) {
@@ -403,25 +430,18 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
       }
 
       // artifact was updated
+      if (resourceType == CedarResourceType.TEMPLATE) {
+        templateSchemaArtifactCache.invalidate(id.getId());
+      }
       HttpEntity templateEntity = templateProxyResponse.getEntity();
       if (templateEntity != null) {
-        String templateEntityContent = EntityUtils.toString(templateEntity, CharEncoding.UTF_8);
-        JsonNode templateJsonNode = JsonMapper.MAPPER.readTree(templateEntityContent);
+        JsonNode templateJsonNode = ArtifactServerUtil.readTree(templateEntity);
 
         String newName = ModelUtil.extractNameFromResource(resourceType, templateJsonNode).getValue().trim();
         String newDescription = ModelUtil.extractDescriptionFromResource(resourceType, templateJsonNode).getValue().trim();
         String newIdentifierValue = ModelUtil.extractIdentifierFromResource(resourceType, templateJsonNode).getValue();
         String newIdentifier = newIdentifierValue == null ? "" : newIdentifierValue.trim();
 
-        FolderServerArtifact resource = folderSession.findArtifactById(id);
-
-        if (resource == null) {
-          return CedarResponse.notFound()
-              .id(id)
-              .errorKey(CedarErrorKey.ARTIFACT_NOT_FOUND)
-              .errorMessage("The artifact can not be found by id")
-              .build();
-        }
         Map<NodeProperty, String> updateFields = new HashMap<>();
         updateFields.put(NodeProperty.DESCRIPTION, newDescription);
         updateFields.put(NodeProperty.NAME, newName);
@@ -431,7 +451,8 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
         if (sourceHash != null) {
           updateFields.put(NodeProperty.SOURCE_HASH, sourceHash);
         }
-        FolderServerArtifact updatedResource = folderSession.updateArtifactById(id, resource.getType(), updateFields);
+        FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(context);
+        FolderServerArtifact updatedResource = folderSession.updateArtifactById(id, folderServerOldResource.getType(), updateFields);
         if (updatedResource == null) {
           return CedarResponse.internalServerError().build();
         } else {
@@ -489,13 +510,18 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
     // Delete from artifact server
     try {
       String url = microserviceUrlUtil.getArtifact().getArtifactTypeWithId(resourceType, id);
-      HttpResponse proxyResponse = ProxyUtil.proxyDelete(url, c);
+      HttpResponse proxyResponse = artifactServerClient.delete(url, c);
       ProxyUtil.proxyResponseHeaders(proxyResponse, response);
       int statusCode = proxyResponse.getStatusLine().getStatusCode();
+      if (resourceType == CedarResourceType.TEMPLATE) {
+        templateSchemaArtifactCache.invalidate(id.getId());
+      }
       if (statusCode != HttpStatus.SC_NO_CONTENT && statusCode != HttpStatus.SC_NOT_FOUND) {
         // artifact was not deleted
         return generateStatusResponse(proxyResponse);
       } else {
+        // The body is not forwarded, it is drained so that the connection goes back to the pool
+        EntityUtils.consumeQuietly(proxyResponse.getEntity());
         if (statusCode == HttpStatus.SC_NOT_FOUND) {
           log.warn("Artifact not found on artifact server, but still trying to delete from Neo4j. Id:" + id);
         }
@@ -514,6 +540,8 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
 
     boolean deleted = folderSession.deleteResourceById(id);
     if (deleted) {
+      // The parent folder is not known here, and the previous version may become visible in other folders' listings
+      folderContentsCountCache.invalidateAll();
       if (previousVersion != null) {
         folderSession.setLatestVersion(previousVersion);
         folderSession.setLatestPublishedVersion(previousVersion);
@@ -527,35 +555,48 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
           .build();
     }
 
+    // Doublecheck if the previous version is present on the artifact server as well.
+    // The lookup runs while the index and the value recommender are being cleaned up
+    CedarSchemaArtifactId previousId = isSchemaArtifact ? schemaArtifact.getPreviousVersion() : null;
+    CompletableFuture<HttpResponse> previousResponseFuture = null;
+    if (previousId != null) {
+      String previousUrl = microserviceUrlUtil.getArtifact().getArtifactTypeWithId(resourceType, previousId);
+      previousResponseFuture = artifactServerClient.getAsync(previousUrl, c);
+    }
+
     removeIndexDocument(id);
     removeValuerecommenderResource(artifact);
     // reindex the previous version, since that just became the latest
-    if (isSchemaArtifact) {
-      CedarSchemaArtifactId previousId = schemaArtifact.getPreviousVersion();
-      // Doublecheck if it is present on the artifact server as well
-      if (previousId != null) {
-        String getResponse = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(resourceType, previousId, c, microserviceUrlUtil, response);
-        if (getResponse != null) {
-          JsonNode getJsonNode = null;
-          try {
-            getJsonNode = JsonMapper.MAPPER.readTree(getResponse);
-            if (getJsonNode != null) {
-              FolderServerArtifact folderServerPreviousR = folderSession.findArtifactById(previousId);
-              updateIndexResource(folderServerPreviousR, c);
-            }
-          } catch (Exception e) {
-            log.error("There was an error while reindexing the new latest version", e);
-          }
+    if (previousResponseFuture != null) {
+      try {
+        // Only the @id is needed here, so the document is not parsed as a whole
+        Map<String, JsonNode> previousValues = ArtifactServerUtil.readTopLevelValues(previousResponseFuture.join().getEntity(), Set.of(LinkedData.ID));
+        if (previousValues.containsKey(LinkedData.ID)) {
+          FolderServerArtifact folderServerPreviousR = folderSession.findArtifactById(previousId);
+          updateIndexResource(folderServerPreviousR, c);
         }
+      } catch (Exception e) {
+        log.error("There was an error while reindexing the new latest version", e);
       }
     }
 
     return Response.noContent().build();
   }
 
+  private boolean userHasAccess(CedarRequestContext context, CedarFilesystemResourceId resourceId,
+                                RequestPermissionCache.AccessLevel level) throws CedarException {
+    return requestPermissionCache.hasAccess(context, resourceId.getId(), level, () -> {
+      ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(context);
+      if (level == RequestPermissionCache.AccessLevel.WRITE) {
+        return permissionSession.userHasWriteAccessToResource(resourceId);
+      } else {
+        return permissionSession.userHasReadAccessToResource(resourceId);
+      }
+    });
+  }
+
   protected void userMustHaveReadAccessToFolder(CedarRequestContext context, CedarFolderId folderId) throws CedarException {
-    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(context);
-    boolean hasReadAccess = permissionSession.userHasReadAccessToResource(folderId);
+    boolean hasReadAccess = userHasAccess(context, folderId, RequestPermissionCache.AccessLevel.READ);
     if (!hasReadAccess) {
       throw new CedarPermissionException("You do not have read access to the folder")
           .errorKey(CedarErrorKey.NO_READ_ACCESS_TO_FOLDER)
@@ -564,8 +605,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void userMustHaveWriteAccessToFolder(CedarRequestContext context, CedarFolderId folderId) throws CedarException {
-    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(context);
-    boolean hasWriteAccess = permissionSession.userHasWriteAccessToResource(folderId);
+    boolean hasWriteAccess = userHasAccess(context, folderId, RequestPermissionCache.AccessLevel.WRITE);
     if (!hasWriteAccess) {
       throw new CedarPermissionException("You do not have write access to the folder")
           .errorKey(CedarErrorKey.NO_WRITE_ACCESS_TO_FOLDER)
@@ -574,8 +614,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void userMustHaveReadAccessToArtifact(CedarRequestContext context, CedarArtifactId artifactId) throws CedarException {
-    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(context);
-    boolean hasReadAccess = permissionSession.userHasReadAccessToResource(artifactId);
+    boolean hasReadAccess = userHasAccess(context, artifactId, RequestPermissionCache.AccessLevel.READ);
     if (!hasReadAccess) {
       throw new CedarPermissionException("You do not have read access to the artifact")
           .errorKey(CedarErrorKey.NO_READ_ACCESS_TO_ARTIFACT)
@@ -584,8 +623,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void userMustHaveWriteAccessToArtifact(CedarRequestContext context, CedarArtifactId artifactId) throws CedarException {
-    ResourcePermissionServiceSession permissionSession = CedarDataServices.getResourcePermissionServiceSession(context);
-    boolean hasWriteAccess = permissionSession.userHasWriteAccessToResource(artifactId);
+    boolean hasWriteAccess = userHasAccess(context, artifactId, RequestPermissionCache.AccessLevel.WRITE);
     if (!hasWriteAccess) {
       throw new CedarPermissionException("You do not have write access to the artifact")
           .errorKey(CedarErrorKey.NO_WRITE_ACCESS_TO_ARTIFACT)
@@ -701,6 +739,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
       if (backendCallResult.isError()) {
         throw new CedarBackendException(backendCallResult);
       }
+      requestPermissionCache.invalidate(c);
 
       if (node.getType() == CedarResourceType.FOLDER) {
         searchPermissionEnqueueService.folderPermissionsChanged(resourceId);
@@ -732,11 +771,19 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void createIndexArtifact(FolderServerArtifact folderServerArtifact, CedarRequestContext c) throws CedarProcessingException {
-    nodeIndexingService.indexDocument(folderServerArtifact, c);
+    if (indexingOutbox != null) {
+      indexingOutbox.enqueue(folderServerArtifact.getResourceId(), IndexingOutbox.Operation.INDEX);
+    } else {
+      nodeIndexingService.indexDocument(folderServerArtifact, c);
+    }
   }
 
   protected void createIndexFolder(FolderServerFolder folderServerFolder, CedarRequestContext c) throws CedarProcessingException {
-    nodeIndexingService.indexDocument(folderServerFolder, c);
+    if (indexingOutbox != null) {
+      indexingOutbox.enqueue(folderServerFolder.getResourceId(), IndexingOutbox.Operation.INDEX);
+    } else {
+      nodeIndexingService.indexDocument(folderServerFolder, c);
+    }
   }
 
   protected void createValuerecommenderResource(FolderServerArtifact folderServerArtifact) {
@@ -747,22 +794,35 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void updateIndexResource(FolderServerArtifact folderServerArtifact, CedarRequestContext c) throws CedarProcessingException {
-    nodeIndexingService.removeDocumentFromIndex(folderServerArtifact.getResourceId());
-    nodeIndexingService.indexDocument(folderServerArtifact, c);
+    updateIndexResource(folderServerArtifact, c, false);
   }
 
   protected void updateIndexResource(FolderServerArtifact folderServerArtifact, CedarRequestContext c, boolean retryRemove) throws CedarProcessingException {
-    if (!retryRemove) {
-      updateIndexResource(folderServerArtifact, c);
+    if (indexingOutbox != null) {
+      indexingOutbox.enqueue(folderServerArtifact.getResourceId(), IndexingOutbox.Operation.INDEX);
     } else {
-      nodeIndexingService.removeDocumentFromIndex(folderServerArtifact.getResourceId(), retryRemove);
+      removeIndexDocumentNow(folderServerArtifact.getResourceId(), retryRemove);
       nodeIndexingService.indexDocument(folderServerArtifact, c);
     }
   }
 
   protected void updateIndexFolder(FolderServerFolder folderServerFolder, CedarRequestContext c) throws CedarProcessingException {
-    nodeIndexingService.removeDocumentFromIndex(folderServerFolder.getResourceId());
-    nodeIndexingService.indexDocument(folderServerFolder, c);
+    if (indexingOutbox != null) {
+      indexingOutbox.enqueue(folderServerFolder.getResourceId(), IndexingOutbox.Operation.INDEX);
+    } else {
+      removeIndexDocumentNow(folderServerFolder.getResourceId(), false);
+      nodeIndexingService.indexDocument(folderServerFolder, c);
+    }
+  }
+
+  // The index has no update operation: a changed document is removed, then indexed again
+  // TODO: replace the document in a single write once NodeIndexingService can index a document under a known id
+  private void removeIndexDocumentNow(CedarFilesystemResourceId resourceId, boolean retryRemove) throws CedarProcessingException {
+    if (retryRemove) {
+      nodeIndexingService.removeDocumentFromIndex(resourceId, true);
+    } else {
+      nodeIndexingService.removeDocumentFromIndex(resourceId);
+    }
   }
 
   protected void updateValuerecommenderResource(FolderServerArtifact folderServerArtifact) {
@@ -773,7 +833,11 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
   }
 
   protected void removeIndexDocument(CedarFilesystemResourceId resourceId) throws CedarProcessingException {
-    nodeIndexingService.removeDocumentFromIndex(resourceId);
+    if (indexingOutbox != null) {
+      indexingOutbox.enqueue(resourceId, IndexingOutbox.Operation.REMOVE);
+    } else {
+      nodeIndexingService.removeDocumentFromIndex(resourceId);
+    }
   }
 
   protected void removeValuerecommenderResource(FolderServerArtifact folderServerArtifact) {
@@ -787,9 +851,6 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
     userMustHaveWriteAccessToFolder(c, folderId);
 
     FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
-    FolderServerFolder folderServerFolder = folderSession.findFolderById(folderId);
-
-    String oldName = folderServerFolder.getName();
 
     CedarParameter name = c.request().getRequestBody().get(SCHEMA_ORG_NAME);
     name.trim();
@@ -835,6 +896,15 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
           .operation(CedarOperations.update(FolderServerFolder.class, "id", folderId.getId()))
           .build();
     } else {
+      // Nothing to change: the folder is left as it is, including its last updated time, so its search document
+      // stays valid
+      boolean nameChanged = nameV != null && !nameV.equals(folder.getName());
+      boolean descriptionChanged = descriptionV != null && !descriptionV.equals(folder.getDescription());
+      if (!nameChanged && !descriptionChanged) {
+        ProvenanceNameUtil.addProvenanceDisplayName(folder);
+        return Response.ok().entity(folder).build();
+      }
+
       Map<NodeProperty, String> updateFields = new HashMap<>();
       if (descriptionV != null) {
         updateFields.put(NodeProperty.DESCRIPTION, descriptionV);
@@ -844,15 +914,7 @@ public class AbstractResourceServerResource extends CedarMicroserviceResource {
         updateFields.put(NodeProperty.NAME_LOWER, nameV.toLowerCase());
       }
       FolderServerFolder folderServerFolderUpdated = folderSession.updateFolderById(folderId, updateFields);
-
-      String newName = folderServerFolderUpdated.getName();
-      if (oldName == null || !oldName.equals(newName)) {
-        removeIndexDocument(folderId);
-        createIndexFolder(folderServerFolderUpdated, c);
-      } else {
-        updateIndexFolder(folderServerFolderUpdated, c);
-      }
-
+      updateIndexFolder(folderServerFolderUpdated, c);
 
       ProvenanceNameUtil.addProvenanceDisplayName(folderServerFolderUpdated);
       return Response.ok().entity(folderServerFolderUpdated).build();
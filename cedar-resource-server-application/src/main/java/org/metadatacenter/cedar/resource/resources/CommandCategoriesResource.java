@@ -3,6 +3,8 @@ package org.metadatacenter.cedar.resource.resources;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiImplicitParams;
@@ -14,6 +16,8 @@ import org.metadatacenter.bridge.CedarDataServices;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.CedarException;
+import org.metadatacenter.exception.CedarObjectNotFoundException;
+import org.metadatacenter.exception.CedarPermissionException;
 import org.metadatacenter.id.CedarCategoryId;
 import org.metadatacenter.id.CedarUntypedArtifactId;
 import org.metadatacenter.model.folderserver.basic.FolderServerArtifact;
@@ -34,6 +38,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 import static org.metadatacenter.rest.assertion.GenericAssertions.NonEmpty;
@@ -45,6 +55,12 @@ public class CommandCategoriesResource extends AbstractResourceServerResource {
 
   private static final Logger log = LoggerFactory.getLogger(CommandCategoriesResource.class);
 
+  private static final int MAX_BATCH_OPERATIONS = 10_000;
+
+  private enum BatchItemStatus {
+    CHANGED, NOT_CHANGED, FORBIDDEN, NOT_FOUND, ERROR
+  }
+
   public CommandCategoriesResource(CedarConfig cedarConfig) {
     super(cedarConfig);
   }
@@ -246,4 +262,170 @@ public class CommandCategoriesResource extends AbstractResourceServerResource {
           .build();
     }
   }
+
+  @POST
+  @Timed
+  @Path("/attach-categories-to-artifacts")
+  @ApiOperation(value = "Attach multiple categories to multiple artifacts",
+      notes = "Attach every listed category to every listed artifact. The user must have 'attach' access to all the "
+          + "categories, otherwise nothing is attached. Artifacts without 'write' access are skipped. The response "
+          + "contains the outcome for each artifact and category.",
+      tags = {"Command", "Categories", "Category Operations"})
+  @ApiImplicitParams({
+      @ApiImplicitParam(name = "categoryBatchAttachRequest", value = "Parameters of the attach operation",
+          required = true,
+          dataType = "org.metadatacenter.cedar.resource.resources.swaggermodel.CategoryBatchAttachRequest",
+          paramType = "body")
+  })
+  @ApiResponses({
+      @ApiResponse(code = 200, message = "Successful operation"),
+      @ApiResponse(code = 400, message = "Bad request"),
+      @ApiResponse(code = 401, message = "Unauthorized"),
+      @ApiResponse(code = 403, message = "Forbidden"),
+      @ApiResponse(code = 404, message = "Not found"),
+      @ApiResponse(code = 500, message = "Internal server error")
+  })
+  public Response attachCategoriesToArtifacts() throws CedarException {
+    return executeCategoryBatch(buildRequestContext(), true);
+  }
+
+  @POST
+  @Timed
+  @Path("/detach-categories-from-artifacts")
+  @ApiOperation(value = "Detach multiple categories from multiple artifacts",
+      notes = "Detach every listed category from every listed artifact. The user must have 'attach' access to all "
+          + "the categories, otherwise nothing is detached. Artifacts without 'write' access are skipped. The "
+          + "response contains the outcome for each artifact and category.",
+      tags = {"Command", "Categories", "Category Operations"})
+  @ApiImplicitParams({
+      @ApiImplicitParam(name = "categoryBatchAttachRequest", value = "Parameters of the detach operation",
+          required = true,
+          dataType = "org.metadatacenter.cedar.resource.resources.swaggermodel.CategoryBatchAttachRequest",
+          paramType = "body")
+  })
+  @ApiResponses({
+      @ApiResponse(code = 200, message = "Successful operation"),
+      @ApiResponse(code = 400, message = "Bad request"),
+      @ApiResponse(code = 401, message = "Unauthorized"),
+      @ApiResponse(code = 403, message = "Forbidden"),
+      @ApiResponse(code = 404, message = "Not found"),
+      @ApiResponse(code = 500, message = "Internal server error")
+  })
+  public Response detachCategoriesFromArtifacts() throws CedarException {
+    return executeCategoryBatch(buildRequestContext(), false);
+  }
+
+  private Response executeCategoryBatch(CedarRequestContext c, boolean attach) throws CedarException {
+    c.must(c.user()).be(LoggedIn);
+
+    c.must(c.request().getRequestBody()).be(NonEmpty);
+    JsonNode batchRequest = c.request().getRequestBody().asJson();
+
+    List<String> artifactIds = readIdList(batchRequest, "artifactIds");
+    List<String> categoryIds = readIdList(batchRequest, "categoryIds");
+    if (artifactIds == null || categoryIds == null) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.MALFORMED_JSON_REQUEST_BODY)
+          .errorMessage("The artifactIds and categoryIds lists must be present and not empty")
+          .build();
+    }
+    if ((long) artifactIds.size() * categoryIds.size() > MAX_BATCH_OPERATIONS) {
+      return CedarResponse.badRequest()
+          .errorKey(CedarErrorKey.INVALID_DATA)
+          .errorMessage("Too many artifact and category pairs in one request")
+          .parameter("maxPairs", MAX_BATCH_OPERATIONS)
+          .build();
+    }
+
+    // Checked once per category, before changing anything
+    List<CedarCategoryId> ccids = new ArrayList<>();
+    for (String categoryId : categoryIds) {
+      CedarCategoryId ccid = CedarCategoryId.build(categoryId);
+      userMustHaveAttachAccessToCategory(c, ccid);
+      ccids.add(ccid);
+    }
+
+    CategoryServiceSession categorySession = CedarDataServices.getCategoryServiceSession(c);
+    Map<CedarUntypedArtifactId, ObjectNode> changedArtifacts = new LinkedHashMap<>();
+    ObjectNode result = JsonMapper.MAPPER.createObjectNode();
+    ArrayNode results = result.putArray("results");
+    RuntimeException batchFailure = null;
+    try {
+      for (String artifactId : artifactIds) {
+        ObjectNode artifactResult = results.addObject();
+        artifactResult.put("artifactId", artifactId);
+        CedarUntypedArtifactId aid;
+        try {
+          aid = CedarUntypedArtifactId.build(artifactId);
+          userMustHaveWriteAccessToArtifact(c, aid);
+        } catch (CedarPermissionException e) {
+          artifactResult.put("status", BatchItemStatus.FORBIDDEN.name());
+          continue;
+        } catch (CedarObjectNotFoundException e) {
+          artifactResult.put("status", BatchItemStatus.NOT_FOUND.name());
+          continue;
+        } catch (CedarException e) {
+          log.error("Error while checking the write access to artifact " + artifactId, e);
+          artifactResult.put("status", BatchItemStatus.ERROR.name());
+          continue;
+        }
+        ArrayNode categoryResults = artifactResult.putArray("categories");
+        boolean changed = false;
+        for (CedarCategoryId ccid : ccids) {
+          ObjectNode categoryResult = categoryResults.addObject();
+          categoryResult.put("categoryId", ccid.getId());
+          try {
+            boolean done = attach ? categorySession.attachCategoryToArtifact(ccid, aid) :
+                categorySession.detachCategoryFromArtifact(ccid, aid);
+            categoryResult.put("status", done ? BatchItemStatus.CHANGED.name() : BatchItemStatus.NOT_CHANGED.name());
+            changed |= done;
+          } catch (Exception e) {
+            log.error("Error while changing category " + ccid.getId() + " of artifact " + artifactId, e);
+            categoryResult.put("status", BatchItemStatus.ERROR.name());
+          }
+        }
+        artifactResult.put("status", changed ? BatchItemStatus.CHANGED.name() : BatchItemStatus.NOT_CHANGED.name());
+        if (changed) {
+          changedArtifacts.put(aid, artifactResult);
+        }
+      }
+    } catch (RuntimeException e) {
+      batchFailure = e;
+    }
+    // The edges written so far are reindexed even if the loop was left with an exception, which is thrown afterwards
+    FolderServiceSession folderSession = CedarDataServices.getFolderServiceSession(c);
+    for (Map.Entry<CedarUntypedArtifactId, ObjectNode> entry : changedArtifacts.entrySet()) {
+      try {
+        FolderServerArtifact updatedResource = folderSession.findArtifactById(entry.getKey());
+        if (updatedResource != null) {
+          updateIndexResource(updatedResource, c, true);
+        }
+        entry.getValue().put("indexed", true);
+      } catch (Exception e) {
+        log.error("Error while reindexing artifact " + entry.getKey().getId(), e);
+        entry.getValue().put("indexed", false);
+      }
+    }
+    if (batchFailure != null) {
+      throw batchFailure;
+    }
+    result.put("changedArtifactCount", changedArtifacts.size());
+    return Response.ok().entity(result).build();
+  }
+
+  private static List<String> readIdList(JsonNode request, String fieldName) {
+    JsonNode list = request.get(fieldName);
+    if (list == null || !list.isArray() || list.isEmpty()) {
+      return null;
+    }
+    // Repeated ids are kept once, in the order of their first occurrence
+    Set<String> ids = new LinkedHashSet<>();
+    for (JsonNode id : list) {
+      if (!id.isTextual() || id.asText().isEmpty()) {
+        return null;
+      }
+      ids.add(id.asText());
+    }
+    return new ArrayList<>(ids);
+  }
 }
@@ -10,13 +10,12 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
-import org.apache.commons.lang.CharEncoding;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.util.EntityUtils;
 import org.metadatacenter.bridge.CedarDataServices;
+import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.constant.LinkedData;
 import org.metadatacenter.error.CedarErrorKey;
@@ -54,7 +53,6 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
 import java.net.URI;
-import java.util.Optional;
 
 import static org.metadatacenter.model.ModelNodeNames.*;
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
@@ -163,8 +161,7 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
       HttpEntity entity = proxyResponse.getEntity();
       int statusCode = proxyResponse.getStatusLine().getStatusCode();
       if (entity != null) {
-        originalDocument = EntityUtils.toString(entity, CharEncoding.UTF_8);
-        JsonNode jsonNode = JsonMapper.MAPPER.readTree(originalDocument);
+        JsonNode jsonNode = ArtifactServerUtil.readTree(entity);
         ((ObjectNode) jsonNode).remove("@id");
         String oldName = ModelUtil.extractNameFromResource(resourceType, jsonNode).getValue();
         if (oldName != null) {
@@ -204,8 +201,7 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
         // artifact was created
         HttpEntity entity = templateProxyResponse.getEntity();
         Header locationHeader = templateProxyResponse.getFirstHeader(HttpHeaders.LOCATION);
-        String entityContent = EntityUtils.toString(entity, CharEncoding.UTF_8);
-        JsonNode jsonNode = JsonMapper.MAPPER.readTree(entityContent);
+        JsonNode jsonNode = ArtifactServerUtil.readTree(entity);
         String createdId = jsonNode.get("@id").asText();
         CedarArtifactId newId = CedarArtifactId.build(createdId, resourceType);
 
@@ -283,6 +279,7 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
     }
 
     if (newResource != null) {
+      folderContentsCountCache.invalidate(targetFolderId);
       folderSession.setDerivedFrom(newId, oldId);
       return newResource;
     } else {
@@ -423,6 +420,8 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
       moved = folderSession.moveResource(sourceArtifactId, targetFolderId);
       searchPermissionEnqueueService.resourceMoved(sourceId.getId());
     }
+    // Inherited permissions follow the new parent
+    requestPermissionCache.invalidate(c);
     if (!moved) {
       BackendCallResult<?> backendCallResult = new BackendCallResult<>();
       backendCallResult.addError(CedarErrorType.SERVER_ERROR)
@@ -430,6 +429,8 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
           .message("There was an error while moving the resource");
       throw new CedarBackendException(backendCallResult);
     } else {
+      // Moving a folder changes the counts of its former parent as well, which is not looked up here
+      folderContentsCountCache.invalidateAll();
       FileSystemResource movedNode = folderSession.findResourceById(sourceId);
       UriBuilder builder = uriInfo.getAbsolutePathBuilder();
       URI uri = builder.build();
@@ -472,7 +473,7 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
     CedarResourceType resourceType = folderSession.getResourceType(untypedResourceId);
     CedarFilesystemResourceId fsResourceId = CedarFilesystemResourceId.build(id, resourceType);
 
-    userMustHaveWriteAccessToFilesystemResource(c, fsResourceId);
+    FileSystemResource currentResource = userMustHaveWriteAccessToFilesystemResource(c, fsResourceId);
 
     String name = null;
     if (!nameParam.isEmpty()) {
@@ -530,8 +531,7 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
         HttpEntity currentTemplateEntity = templateCurrentProxyResponse.getEntity();
         if (currentTemplateEntity != null) {
           try {
-            String currentTemplateEntityContent = EntityUtils.toString(currentTemplateEntity, CharEncoding.UTF_8);
-            JsonNode currentTemplateJsonNode = JsonMapper.MAPPER.readTree(currentTemplateEntityContent);
+            JsonNode currentTemplateJsonNode = ArtifactServerUtil.readTree(currentTemplateEntity);
             String currentName = ModelUtil.extractNameFromResource(resourceType, currentTemplateJsonNode).getValue();
             String currentDescription = ModelUtil.extractDescriptionFromResource(resourceType, currentTemplateJsonNode).getValue();
             String publicationStatusString = ModelUtil.extractPublicationStatusFromResource(resourceType, currentTemplateJsonNode).getValue();
@@ -558,7 +558,8 @@ public class CommandFileSystemResource extends AbstractResourceServerResource {
               if (changeDescription) {
                 updateDescriptionInObject(currentTemplateJsonNode, description);
               }
-              return executeResourceCreateOrUpdateViaPut(c, resourceType, (CedarArtifactId) fsResourceId, Optional.empty(), JsonMapper.MAPPER.writeValueAsString(currentTemplateJsonNode));
+              return executeResourceUpdateOnArtifactServerAndGraphDb(c, resourceType, (CedarArtifactId) fsResourceId,
+                  JsonMapper.MAPPER.writeValueAsString(currentTemplateJsonNode), (FolderServerArtifact) currentResource);
             } else {
               return CedarResponse.badRequest()
                   .errorKey(CedarErrorKey.NOTHING_TO_DO)
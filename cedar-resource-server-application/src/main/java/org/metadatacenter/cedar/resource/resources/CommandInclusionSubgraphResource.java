@@ -1,37 +1,43 @@
 package org.metadatacenter.cedar.resource.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
 import org.metadatacenter.bridge.CedarDataServices;
-import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphDocumentCache;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphJobService;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphPropagator;
+import org.metadatacenter.cedar.resource.inclusionsubgraph.InclusionSubgraphUpdate;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.error.CedarErrorKey;
 import org.metadatacenter.exception.CedarException;
-import org.metadatacenter.id.CedarTypedSchemaArtifactId;
 import org.metadatacenter.id.CedarUntypedSchemaArtifactId;
 import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphRequest;
 import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphResponse;
-import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphTodoElement;
 import org.metadatacenter.model.request.inclusionsubgraph.InclusionSubgraphTodoList;
 import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.InclusionSubgraphServiceSession;
 import org.metadatacenter.server.cache.user.ProvenanceNameUtil;
 import org.metadatacenter.server.search.util.InclusionSubgraphUtil;
-import org.metadatacenter.util.CedarResourceTypeUtil;
 import org.metadatacenter.util.http.CedarResponse;
 import org.metadatacenter.util.json.JsonMapper;
 
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
 
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
@@ -40,10 +46,18 @@ import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 @Api(value = "/command", tags = "Command", authorizations = {@Authorization("api_key")})
 public class CommandInclusionSubgraphResource extends AbstractResourceServerResource {
 
+  private static InclusionSubgraphPropagator inclusionSubgraphPropagator;
+  private static InclusionSubgraphJobService inclusionSubgraphJobService;
+
   public CommandInclusionSubgraphResource(CedarConfig cedarConfig) {
     super(cedarConfig);
   }
 
+  public static void injectInclusionSubgraphServices(InclusionSubgraphPropagator propagator, InclusionSubgraphJobService jobService) {
+    inclusionSubgraphPropagator = propagator;
+    inclusionSubgraphJobService = jobService;
+  }
+
   @POST
   @Timed
   @Path("/inclusions-subgraph-preview")
@@ -98,7 +112,10 @@ public class CommandInclusionSubgraphResource extends AbstractResourceServerReso
       @ApiResponse(code = 404, message = "Not found"),
       @ApiResponse(code = 500, message = "Internal server error")
   })
-  public Response updateInclusionSubgraph() throws CedarException, IOException {
+  public Response updateInclusionSubgraph(
+      @ApiParam(value = "Run the update as a background job. The response contains the job, its progress can be "
+          + "followed using the inclusions-subgraph-update-status call.")
+      @QueryParam("async") Optional<Boolean> asyncParam) throws CedarException, IOException {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
@@ -121,25 +138,53 @@ public class CommandInclusionSubgraphResource extends AbstractResourceServerReso
 
     InclusionSubgraphTodoList todoList = InclusionSubgraphUtil.updateResources(treeResponse);
 
-    for (InclusionSubgraphTodoElement todo : todoList.getTodoList()) {
-      CedarTypedSchemaArtifactId sourceArtifactId = CedarResourceTypeUtil.buildTypedArtifactId(todo.getSourceId());
-      CedarTypedSchemaArtifactId targetArtifactId = CedarResourceTypeUtil.buildTypedArtifactId(todo.getTargetId());
+    List<InclusionSubgraphUpdate> updates = InclusionSubgraphUpdate.fromTodoList(todoList);
 
-      String sourceArtifact = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(sourceArtifactId.getType(), sourceArtifactId, c, microserviceUrlUtil, null);
-      String targetArtifact = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(targetArtifactId.getType(), targetArtifactId, c, microserviceUrlUtil, null);
-      JsonNode sourceJsonNode = JsonMapper.MAPPER.readTree(sourceArtifact);
-      JsonNode targetJsonNode = JsonMapper.MAPPER.readTree(targetArtifact);
-      boolean replaced = InclusionSubgraphUtil.updateSubdocumentByAtId(targetJsonNode, todo.getSourceId(), sourceJsonNode);
-      String newTargetContent = JsonMapper.MAPPER.writeValueAsString(targetJsonNode);
-
-      Response putResponse = ArtifactServerUtil.putSchemaArtifactToArtifactServer(targetArtifactId.getType(), targetArtifactId, c, newTargetContent, microserviceUrlUtil);
+    InclusionSubgraphJobService.userMustHaveWriteAccessToTargets(c, updates);
 
+    if (asyncParam.isPresent() && asyncParam.get()) {
+      String jobId = inclusionSubgraphJobService.submit(id, c.getCedarUser().getId(), updates);
+      return Response.accepted(inclusionSubgraphJobService.getStatus(jobId)).build();
     }
 
+    InclusionSubgraphDocumentCache documentCache = new InclusionSubgraphDocumentCache();
+    inclusionSubgraphPropagator.propagate(c, updates, documentCache);
+
     ProvenanceNameUtil.addProvenanceDisplayNames(treeResponse);
 
-    return Response.ok(treeResponse).build();
+    ObjectNode output = JsonMapper.MAPPER.valueToTree(treeResponse);
+    output.set("documentCache", documentCache.getStats());
+    return Response.ok(output).build();
   }
 
+  @GET
+  @Timed
+  @Path("/inclusions-subgraph-update-status/{id}")
+  @ApiOperation(value = "Get the status of an inclusion subgraph update job",
+      notes = "Get the status of a background inclusion subgraph update, with the number of processed and failed "
+          + "updates. Only the user who submitted the job can read its status.")
+  @ApiResponses({
+      @ApiResponse(code = 200, message = "Successful operation"),
+      @ApiResponse(code = 400, message = "Bad request"),
+      @ApiResponse(code = 401, message = "Unauthorized"),
+      @ApiResponse(code = 403, message = "Forbidden"),
+      @ApiResponse(code = 404, message = "Not found"),
+      @ApiResponse(code = 500, message = "Internal server error")
+  })
+  public Response inclusionSubgraphUpdateStatus(
+      @ApiParam(value = "Job identifier.", required = true) @PathParam("id") String jobId) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+
+    ObjectNode status = inclusionSubgraphJobService.getStatus(jobId);
+    // Jobs of other users are reported as missing
+    if (status == null || !c.getCedarUser().getId().equals(status.path("createdBy").asText(null))) {
+      return CedarResponse.notFound()
+          .errorMessage("The inclusion subgraph update job can not be found by id")
+          .parameter("id", jobId)
+          .build();
+    }
+    return Response.ok().entity(status).build();
+  }
 
 }
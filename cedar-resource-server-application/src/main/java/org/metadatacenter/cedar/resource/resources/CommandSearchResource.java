@@ -1,18 +1,21 @@
 package org.metadatacenter.cedar.resource.resources;
 
 import com.codahale.metrics.annotation.Timed;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
-import org.metadatacenter.cedar.resource.search.ValueSetsImportStatusManager;
+import org.metadatacenter.cedar.resource.indexing.IncrementalReindexService;
+import org.metadatacenter.cedar.resource.task.BackgroundTaskExecutor;
+import org.metadatacenter.cedar.resource.task.TaskStatusStore;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.exception.CedarException;
-import org.metadatacenter.exception.CedarProcessingException;
 import org.metadatacenter.rest.assertion.noun.CedarParameter;
 import org.metadatacenter.rest.assertion.noun.CedarRequestBody;
 import org.metadatacenter.rest.context.CedarRequestContext;
@@ -29,10 +32,10 @@ import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Optional;
 
 import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 
@@ -42,7 +45,15 @@ import static org.metadatacenter.rest.assertion.GenericAssertions.LoggedIn;
 public class CommandSearchResource extends AbstractResourceServerResource {
 
   private static final Logger log = LoggerFactory.getLogger(CommandSearchResource.class);
+  private static final String LOAD_VALUE_SETS_TASK = "load-valuesets-ontology";
+  private static final String REGENERATE_SEARCH_INDEX_TASK = "regenerate-search-index";
+  private static final String GENERATE_EMPTY_SEARCH_INDEX_TASK = "generate-empty-search-index";
+  private static final long VALUE_SETS_WAIT_MILLIS = 5000;
+  private static final long VALUE_SETS_MAX_WAIT_MILLIS = 30 * 60 * 1000;
   private static UserService userService;
+  private static IncrementalReindexService incrementalReindexService;
+  private static BackgroundTaskExecutor backgroundTaskExecutor;
+  private static TaskStatusStore taskStatusStore;
 
   public CommandSearchResource(CedarConfig cedarConfig) {
     super(cedarConfig);
@@ -52,6 +63,15 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     userService = us;
   }
 
+  public static void injectIncrementalReindexService(IncrementalReindexService irs) {
+    incrementalReindexService = irs;
+  }
+
+  public static void injectBackgroundTaskServices(BackgroundTaskExecutor bte, TaskStatusStore tss) {
+    backgroundTaskExecutor = bte;
+    taskStatusStore = tss;
+  }
+
   @POST
   @Timed
   @Path("/load-valuesets-ontology")
@@ -72,34 +92,30 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     c.must(c.user()).be(LoggedIn);
     //c.must(c.user()).have(CedarPermission.SEARCH_INDEX_REINDEX);
 
-    if (ValueSetsImportStatusManager.getInstance().getImportStatus() == ValueSetsImportStatusManager.ImportStatus.IN_PROGRESS) {
+    // The lock is shared, this also covers a loading started on another node. It is held from now until the task ends.
+    if (!taskStatusStore.tryLock(LOAD_VALUE_SETS_TASK)) {
       return CedarResponse.badRequest().errorMessage("Value set loading already in progress").build();
-    } else {
-      ValueSetsImportStatusManager.getInstance().setImportStatus(ValueSetsImportStatusManager.ImportStatus.IN_PROGRESS);
-
-      ExecutorService executor = Executors.newSingleThreadExecutor();
-      executor.submit(() -> {
-        LoadValueSetsOntologyTask task = new LoadValueSetsOntologyTask(cedarConfig);
-        try {
-          CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-
-          task.loadValueSetsOntology(cedarAdminRequestContext);
-
-          ValueSetsImportStatusManager.getInstance().setImportStatus(ValueSetsImportStatusManager.ImportStatus.COMPLETE);
-        } catch (CedarProcessingException e) {
-          ValueSetsImportStatusManager.getInstance().setImportStatus(ValueSetsImportStatusManager.ImportStatus.ERROR);
-          log.error("Error in load value sets ontology executor", e);
-        }
-      });
-      return Response.ok().build();
     }
+    String taskId = backgroundTaskExecutor.submit(BackgroundTaskExecutor.Pool.VALUE_SETS, LOAD_VALUE_SETS_TASK, () -> {
+      try {
+        loadValueSetsOntology();
+      } finally {
+        taskStatusStore.unlock(LOAD_VALUE_SETS_TASK);
+      }
+    });
+    if (taskId == null) {
+      taskStatusStore.unlock(LOAD_VALUE_SETS_TASK);
+      return tooManyBackgroundTasks();
+    }
+    return Response.ok().build();
   }
 
   @GET
   @Timed
   @Path("/load-valuesets-ontology-status")
   @ApiOperation(value = "Get the status of the value sets ontology loading",
-      notes = "Get the current status of the value sets ontology loading process.")
+      notes = "Get the current status of the value sets ontology loading process, and the recent loadings with "
+          + "the node that ran them, their start and end time, duration and error.")
   @ApiResponses({
       @ApiResponse(code = 200, message = "Successful operation"),
       @ApiResponse(code = 400, message = "Bad request"),
@@ -112,7 +128,10 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     CedarRequestContext c = buildRequestContext();
     c.must(c.user()).be(LoggedIn);
 
-    JsonNode output = JsonMapper.MAPPER.valueToTree(ValueSetsImportStatusManager.getInstance());
+    ArrayNode tasks = taskStatusStore.getRecent(LOAD_VALUE_SETS_TASK);
+    ObjectNode output = JsonMapper.MAPPER.createObjectNode();
+    output.put("importStatus", tasks.isEmpty() ? "NOT_YET_INITIATED" : importStatus(tasks.get(0).get("state").asText()));
+    output.set("tasks", tasks);
     return Response.ok().entity(output).build();
   }
 
@@ -148,35 +167,94 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     CedarParameter forceParam = requestBody.get("force");
     final boolean force = forceParam.booleanValue();
 
-    ExecutorService executor = Executors.newSingleThreadExecutor();
-    executor.submit(() -> {
+    // The fingerprints of the incremental run would be cleared under it
+    if (incrementalReindexService.isInProgress()) {
+      return incrementalReindexInProgress();
+    }
+    String taskId = backgroundTaskExecutor.submit(BackgroundTaskExecutor.Pool.SEARCH_INDEX, REGENERATE_SEARCH_INDEX_TASK, () -> {
       // 1. LOAD VALUE SETS ONTOLOGY. This step is only required in CEDAR installations that need to load CDEs into the
       // index (e.g., CEDAR Production). In those cases, this task ensures that the CDE values are available to be
       // indexed before the index regeneration task begins. In the case of installations that don't manage CDEs, this
       // task won't be able to load the CADSR-VS.owl file and will throw a warning.
-      LoadValueSetsOntologyTask loadOntologyTask = new LoadValueSetsOntologyTask(cedarConfig);
       try {
-        CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-        loadOntologyTask.loadValueSetsOntology(cedarAdminRequestContext);
-        ValueSetsImportStatusManager.getInstance().setImportStatus(ValueSetsImportStatusManager.ImportStatus.COMPLETE);
-      } catch (CedarProcessingException e) {
-        ValueSetsImportStatusManager.getInstance().setImportStatus(ValueSetsImportStatusManager.ImportStatus.ERROR);
+        loadValueSetsOntologyBeforeReindex();
+      } catch (CedarException e) {
         log.warn("Failed to load value sets ontology: " + e.getMessage());
       }
 
       // 2. REGENERATE SEARCH INDEX
       RegenerateSearchIndexTask regenerateIndexTask = new RegenerateSearchIndexTask(cedarConfig);
-      try {
-        CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-        regenerateIndexTask.regenerateSearchIndex(force, cedarAdminRequestContext);
-      } catch (CedarProcessingException e) {
-        log.error("Error in index regeneration executor", e);
-      }
+      CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+      regenerateIndexTask.regenerateSearchIndex(force, cedarAdminRequestContext);
     });
+    if (taskId == null) {
+      return tooManyBackgroundTasks();
+    }
+    incrementalReindexService.clearFingerprints();
 
     return Response.ok().build();
   }
 
+  @POST
+  @Timed
+  @Path("/regenerate-search-index-incrementally")
+  @ApiOperation(value = "Regenerate search index incrementally.",
+      notes = "Reindex every folder and artifact into the current search index, in place. This is an administrative "
+          + "command, you need special permission to run it. The resources are processed in partitions by parallel "
+          + "workers, and the progress is saved after every page. If the server is restarted, the run is resumed "
+          + "where it stopped. Documents whose resource and permissions did not change since the previous run are "
+          + "not rewritten, unless the force parameter is set. The progress can be followed using the "
+          + "regenerate-search-index-incrementally-status call.",
+      tags = {"Command", "Administration"})
+  @ApiResponses({
+      @ApiResponse(code = 202, message = "Accepted"),
+      @ApiResponse(code = 400, message = "Bad request"),
+      @ApiResponse(code = 401, message = "Unauthorized"),
+      @ApiResponse(code = 403, message = "Forbidden"),
+      @ApiResponse(code = 500, message = "Internal server error")
+  })
+  public Response regenerateSearchIndexIncrementally(
+      @ApiParam(value = "Rewrite every document, including the unchanged ones.")
+      @QueryParam("force") Optional<Boolean> forceParam) throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+    c.must(c.user()).have(CedarPermission.SEARCH_INDEX_REINDEX);
+
+    if (taskStatusStore.isActive(REGENERATE_SEARCH_INDEX_TASK) || taskStatusStore.isActive(GENERATE_EMPTY_SEARCH_INDEX_TASK)) {
+      return CedarResponse.badRequest().errorMessage("Search index regeneration already in progress").build();
+    }
+    if (!incrementalReindexService.start(forceParam.orElse(false))) {
+      return CedarResponse.badRequest().errorMessage("Incremental search index regeneration already in progress").build();
+    }
+    return Response.accepted().entity(incrementalReindexService.getStatus()).build();
+  }
+
+  @GET
+  @Timed
+  @Path("/regenerate-search-index-incrementally-status")
+  @ApiOperation(value = "Get the status of the incremental search index regeneration",
+      notes = "Get the status of the last incremental search index regeneration, with the number of indexed and "
+          + "failed resources, the indexing rate and the estimated remaining time.",
+      tags = {"Command", "Administration"})
+  @ApiResponses({
+      @ApiResponse(code = 200, message = "Successful operation"),
+      @ApiResponse(code = 401, message = "Unauthorized"),
+      @ApiResponse(code = 403, message = "Forbidden"),
+      @ApiResponse(code = 404, message = "Not found"),
+      @ApiResponse(code = 500, message = "Internal server error")
+  })
+  public Response regenerateSearchIndexIncrementallyStatus() throws CedarException {
+    CedarRequestContext c = buildRequestContext();
+    c.must(c.user()).be(LoggedIn);
+    c.must(c.user()).have(CedarPermission.SEARCH_INDEX_REINDEX);
+
+    ObjectNode status = incrementalReindexService.getStatus();
+    if (status == null) {
+      return CedarResponse.notFound().errorMessage("No incremental search index regeneration has been run").build();
+    }
+    return Response.ok().entity(status).build();
+  }
+
   @POST
   @Timed
   @Path("/generate-empty-search-index")
@@ -198,17 +276,18 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     c.must(c.user()).be(LoggedIn);
     c.must(c.user()).have(CedarPermission.SEARCH_INDEX_REINDEX);
 
-    ExecutorService executor = Executors.newSingleThreadExecutor();
-    executor.submit(() -> {
+    if (incrementalReindexService.isInProgress()) {
+      return incrementalReindexInProgress();
+    }
+    String taskId = backgroundTaskExecutor.submit(BackgroundTaskExecutor.Pool.SEARCH_INDEX, GENERATE_EMPTY_SEARCH_INDEX_TASK, () -> {
       GenerateEmptySearchIndexTask task = new GenerateEmptySearchIndexTask(cedarConfig);
-      try {
-        CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-        task.generateEmptySearchIndex(cedarAdminRequestContext);
-      } catch (CedarProcessingException e) {
-        //TODO: handle this, log it separately
-        log.error("Error in index regeneration executor", e);
-      }
+      CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+      task.generateEmptySearchIndex(cedarAdminRequestContext);
     });
+    if (taskId == null) {
+      return tooManyBackgroundTasks();
+    }
+    incrementalReindexService.clearFingerprints();
 
     return Response.ok().build();
   }
@@ -244,17 +323,14 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     CedarRequestBody requestBody = c.request().getRequestBody();
     CedarParameter forceParam = requestBody.get("force");
     final boolean force = forceParam.booleanValue();
-    ExecutorService executor = Executors.newSingleThreadExecutor();
-    executor.submit(() -> {
+    String taskId = backgroundTaskExecutor.submit(BackgroundTaskExecutor.Pool.RULES_INDEX, "regenerate-rules-index", () -> {
       RegenerateRulesIndexTask task = new RegenerateRulesIndexTask(cedarConfig);
-      try {
-        CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-        task.regenerateRulesIndex(force, cedarAdminRequestContext);
-      } catch (CedarProcessingException e) {
-        //TODO: handle this, log it separately
-        log.error("Error in index regeneration executor", e);
-      }
+      CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+      task.regenerateRulesIndex(force, cedarAdminRequestContext);
     });
+    if (taskId == null) {
+      return tooManyBackgroundTasks();
+    }
 
     return Response.ok().build();
   }
@@ -280,19 +356,71 @@ public class CommandSearchResource extends AbstractResourceServerResource {
     c.must(c.user()).be(LoggedIn);
     c.must(c.user()).have(CedarPermission.SEARCH_INDEX_REINDEX);
 
-    ExecutorService executor = Executors.newSingleThreadExecutor();
-    executor.submit(() -> {
+    String taskId = backgroundTaskExecutor.submit(BackgroundTaskExecutor.Pool.RULES_INDEX, "generate-empty-rules-index", () -> {
       GenerateEmptyRulesIndexTask task = new GenerateEmptyRulesIndexTask(cedarConfig);
-      try {
-        CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
-        task.generateEmptyRulesIndex(cedarAdminRequestContext);
-      } catch (CedarProcessingException e) {
-        //TODO: handle this, log it separately
-        log.error("Error in index regeneration executor", e);
-      }
+      CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+      task.generateEmptyRulesIndex(cedarAdminRequestContext);
     });
+    if (taskId == null) {
+      return tooManyBackgroundTasks();
+    }
 
     return Response.ok().build();
   }
 
+  private void loadValueSetsOntology() throws CedarException {
+    LoadValueSetsOntologyTask task = new LoadValueSetsOntologyTask(cedarConfig);
+    CedarRequestContext cedarAdminRequestContext = CedarRequestContextFactory.fromAdminUser(cedarConfig, userService);
+    task.loadValueSetsOntology(cedarAdminRequestContext);
+  }
+
+  // Takes the value set loading lock and is recorded as a value set loading task, so that it does not run at the same
+  // time as a loading on any node. If one is in progress, its end is waited for, for a limited time, instead of loading
+  // the ontology again.
+  private void loadValueSetsOntologyBeforeReindex() throws Exception {
+    if (!taskStatusStore.tryLock(LOAD_VALUE_SETS_TASK)) {
+      log.info("Value set loading already in progress, waiting for it before regenerating the search index");
+      long deadline = System.currentTimeMillis() + VALUE_SETS_MAX_WAIT_MILLIS;
+      while (taskStatusStore.isLocked(LOAD_VALUE_SETS_TASK)) {
+        if (System.currentTimeMillis() >= deadline) {
+          log.warn("Value set loading still in progress after " + VALUE_SETS_MAX_WAIT_MILLIS / 60000 + " minutes, "
+              + "regenerating the search index without waiting for it");
+          return;
+        }
+        Thread.sleep(VALUE_SETS_WAIT_MILLIS);
+      }
+      return;
+    }
+    try {
+      String taskId = taskStatusStore.create(LOAD_VALUE_SETS_TASK);
+      taskStatusStore.started(taskId);
+      try {
+        loadValueSetsOntology();
+        taskStatusStore.finished(taskId, null);
+      } catch (Exception e) {
+        taskStatusStore.finished(taskId, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        throw e;
+      }
+    } finally {
+      taskStatusStore.unlock(LOAD_VALUE_SETS_TASK);
+    }
+  }
+
+  private static String importStatus(String taskState) {
+    return switch (TaskStatusStore.TaskState.valueOf(taskState)) {
+      case QUEUED, RUNNING -> "IN_PROGRESS";
+      case COMPLETE -> "COMPLETE";
+      case FAILED -> "ERROR";
+    };
+  }
+
+  private static Response incrementalReindexInProgress() {
+    return CedarResponse.badRequest().errorMessage("Incremental search index regeneration in progress, wait for it to "
+        + "finish").build();
+  }
+
+  private static Response tooManyBackgroundTasks() {
+    return CedarResponse.badRequest().errorMessage("Too many background tasks are queued, try again later").build();
+  }
+
 }
@@ -11,6 +11,7 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.metadatacenter.artifacts.model.core.TemplateSchemaArtifact;
 import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
@@ -67,6 +68,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.metadatacenter.constant.CedarPathParameters.PP_TEMPLATE_ID;
 import static org.metadatacenter.constant.CedarQueryParameters.QP_FOLDER_NAME;
@@ -82,6 +84,8 @@ public class CommandVersionResource extends AbstractResourceServerResource {
 
   private static final Logger log = LoggerFactory.getLogger(CommandVersionResource.class);
   private static CloneInstancesEnqueueService cloneInstanceEnqueueService;
+  private static ForkJoinPool deltaFinderPool;
+  private static int deltaFinderParallelThreshold;
 
   public CommandVersionResource(CedarConfig cedarConfig) {
     super(cedarConfig);
@@ -91,6 +95,11 @@ public class CommandVersionResource extends AbstractResourceServerResource {
     cloneInstanceEnqueueService = cies;
   }
 
+  public static void injectDeltaFinderPool(ForkJoinPool pool, int parallelThreshold) {
+    deltaFinderPool = pool;
+    deltaFinderParallelThreshold = parallelThreshold;
+  }
+
   @POST
   @Timed
   @Path("/publish-artifact")
@@ -166,12 +175,12 @@ public class CommandVersionResource extends AbstractResourceServerResource {
     // Check update permission
     c.must(c.user()).have(updatePermission);
 
-    String getResponse = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(resourceType, aid, c,
+    HttpEntity getEntity = ArtifactServerUtil.getSchemaArtifactEntityFromArtifactServer(resourceType, aid, c,
         microserviceUrlUtil, response);
-    if (getResponse != null) {
+    if (getEntity != null) {
       JsonNode getJsonNode = null;
       try {
-        getJsonNode = JsonMapper.MAPPER.readTree(getResponse);
+        getJsonNode = ArtifactServerUtil.readTree(getEntity);
         if (getJsonNode != null) {
 
           ResourceVersion oldVersion = null;
@@ -196,6 +205,9 @@ public class CommandVersionResource extends AbstractResourceServerResource {
           Response putResponse = ArtifactServerUtil.putSchemaArtifactToArtifactServer(resourceType, aid, c, content,
               microserviceUrlUtil);
           int putStatus = putResponse.getStatus();
+          if (resourceType == CedarResourceType.TEMPLATE) {
+            templateSchemaArtifactCache.invalidate(aid.getId());
+          }
 
           if (putStatus == HttpStatus.SC_OK) {
             // publish in Neo4j server
@@ -223,6 +235,8 @@ public class CommandVersionResource extends AbstractResourceServerResource {
               }
             }
 
+            // Version filtered listings of any folder holding a version of this artifact may change
+            folderContentsCountCache.invalidateAll();
             FolderServerArtifact updatedResource = folderSession.findArtifactById(aid);
             updateIndexResource(updatedResource, c);
 
@@ -351,12 +365,12 @@ public class CommandVersionResource extends AbstractResourceServerResource {
     // Check if the user has write permission to the target folder
     userMustHaveWriteAccessToFolder(c, fid);
 
-    String getResponse = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(artifactType, aid, c,
+    HttpEntity getEntity = ArtifactServerUtil.getSchemaArtifactEntityFromArtifactServer(artifactType, aid, c,
         microserviceUrlUtil, response);
-    if (getResponse != null) {
+    if (getEntity != null) {
       JsonNode getJsonNode = null;
       try {
-        getJsonNode = JsonMapper.MAPPER.readTree(getResponse);
+        getJsonNode = ArtifactServerUtil.readTree(getEntity);
         if (getJsonNode != null) {
 
           ResourceVersion oldVersion = null;
@@ -426,6 +440,7 @@ public class CommandVersionResource extends AbstractResourceServerResource {
                   .message("There was an error while creating the draft version of the artifact");
               throw new CedarBackendException(backendCallResult);
             } else {
+              folderContentsCountCache.invalidateAll();
               if (propagateSharing) {
                 ResourcePermissionServiceSession permissionSession =
                     CedarDataServices.getResourcePermissionServiceSession(c);
@@ -507,20 +522,21 @@ public class CommandVersionResource extends AbstractResourceServerResource {
       return Response.ok().entity(resp).build();
     }
 
-    String getResponse = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(CedarResourceType.TEMPLATE, tid, c,
-        microserviceUrlUtil, response);
-    if (getResponse != null) {
+    HttpEntity oldTemplateEntity = ArtifactServerUtil.getSchemaArtifactEntityFromArtifactServer(CedarResourceType.TEMPLATE,
+        tid, c, microserviceUrlUtil, response);
+    if (oldTemplateEntity != null) {
       JsonNode oldTemplateJsonNode;
       JsonNode newTemplateJsonNode;
       try {
-        oldTemplateJsonNode = JsonMapper.MAPPER.readTree(getResponse);
+        oldTemplateJsonNode = ArtifactServerUtil.readTree(oldTemplateEntity);
         newTemplateJsonNode = JsonMapper.MAPPER.readTree(c.request().getRequestBody().asJsonString());
         if (oldTemplateJsonNode != null && newTemplateJsonNode != null) {
-          JsonArtifactReader reader = new JsonArtifactReader();
-          TemplateSchemaArtifact oldModelArtifact = reader.readTemplateSchemaArtifact((ObjectNode) oldTemplateJsonNode);
-          TemplateSchemaArtifact newModelArtifact = reader.readTemplateSchemaArtifact((ObjectNode) newTemplateJsonNode);
+          TemplateSchemaArtifact oldModelArtifact = templateSchemaArtifactCache.get(tid.getId(),
+              (ObjectNode) oldTemplateJsonNode);
+          TemplateSchemaArtifact newModelArtifact =
+              new JsonArtifactReader().readTemplateSchemaArtifact((ObjectNode) newTemplateJsonNode);
 
-          DeltaFinder finder = new DeltaFinder();
+          DeltaFinder finder = new DeltaFinder(deltaFinderPool, deltaFinderParallelThreshold);
           Delta delta = finder.findDelta(oldModelArtifact, newModelArtifact);
 
           List<Change> destructive = delta.getDestructiveChanges();
@@ -572,18 +588,19 @@ public class CommandVersionResource extends AbstractResourceServerResource {
 
     userMustHaveReadAccessToArtifact(c, tid);
 
-    String getResponse = ArtifactServerUtil.getSchemaArtifactFromArtifactServer(CedarResourceType.TEMPLATE, tid, c,
-        microserviceUrlUtil, response);
-    if (getResponse != null) {
+    HttpEntity oldTemplateEntity = ArtifactServerUtil.getSchemaArtifactEntityFromArtifactServer(CedarResourceType.TEMPLATE,
+        tid, c, microserviceUrlUtil, response);
+    if (oldTemplateEntity != null) {
       JsonNode oldTemplateJsonNode;
       JsonNode newTemplateJsonNode;
       try {
-        oldTemplateJsonNode = JsonMapper.MAPPER.readTree(getResponse);
+        oldTemplateJsonNode = ArtifactServerUtil.readTree(oldTemplateEntity);
         newTemplateJsonNode = JsonMapper.MAPPER.readTree(c.request().getRequestBody().asJsonString());
         if (oldTemplateJsonNode != null && newTemplateJsonNode != null) {
-          JsonArtifactReader reader = new JsonArtifactReader();
-          TemplateSchemaArtifact oldModelArtifact = reader.readTemplateSchemaArtifact((ObjectNode) oldTemplateJsonNode);
-          TemplateSchemaArtifact newModelArtifact = reader.readTemplateSchemaArtifact((ObjectNode) newTemplateJsonNode);
+          TemplateSchemaArtifact oldModelArtifact = templateSchemaArtifactCache.get(tid.getId(),
+              (ObjectNode) oldTemplateJsonNode);
+          TemplateSchemaArtifact newModelArtifact =
+              new JsonArtifactReader().readTemplateSchemaArtifact((ObjectNode) newTemplateJsonNode);
 
           JsonNode jsonNode = oldTemplateJsonNode.get(PAV_VERSION);
           String oldVersionString = jsonNode.asText();
@@ -144,7 +144,8 @@ public class FolderContentsResource extends AbstractResourceServerResource {
 
     List<FolderServerResourceExtract> pathInfo = PathInfoBuilder.getResourcePathExtract(c, folderSession, permissionSession, folder);
 
-    FolderServerNodeListResponse r = NodeListUtil.findFolderContents(cedarConfig, folderSession, fid, absoluteURI.toString(), pathInfo, pagedSortedTypedQuery);
+    FolderServerNodeListResponse r = findFolderContents(folderSession, fid, c.getCedarUser().getId(),
+        absoluteURI.toString(), pathInfo, pagedSortedTypedQuery);
 
     ProvenanceNameUtil.addProvenanceDisplayNames(r);
     return Response.ok(r).build();
@@ -246,8 +247,8 @@ public class FolderContentsResource extends AbstractResourceServerResource {
 
     List<FolderServerResourceExtract> pathInfo = PathInfoBuilder.getResourcePathExtract(c, folderSession, permissionSession, folder);
 
-    FolderServerNodeMapListResponse r = findFolderContentsAsMaps(folderSession, fid, absoluteURI.toString(), pathInfo, pagedSortedTypedQuery,
-        fieldNameList);
+    FolderServerNodeMapListResponse r = findFolderContentsAsMaps(folderSession, fid, c.getCedarUser().getId(),
+        absoluteURI.toString(), pathInfo, pagedSortedTypedQuery, fieldNameList);
 
     boolean readCategories = fieldNameList != null && fieldNameList.contains("categories");
 
@@ -280,7 +281,40 @@ public class FolderContentsResource extends AbstractResourceServerResource {
   }
 
 
-  private FolderServerNodeMapListResponse findFolderContentsAsMaps(FolderServiceSession folderSession, CedarFolderId folderId, String absoluteUrl,
+  private FolderServerNodeListResponse findFolderContents(FolderServiceSession folderSession, CedarFolderId folderId,
+                                                          String userId, String absoluteUrl,
+                                                          List<FolderServerResourceExtract> pathInfo,
+                                                          PagedSortedTypedQuery pagedSortedTypedQuery) {
+    FolderServerNodeListResponse r = new FolderServerNodeListResponse();
+    r.setNodeListQueryType(NodeListQueryType.FOLDER_CONTENT);
+
+    NodeListRequest req = NodeListUtil.buildNodeListRequest(pagedSortedTypedQuery);
+
+    r.setRequest(req);
+
+    List<FolderServerResourceExtract> resources = folderSession.findFolderContentsExtract(folderId, req);
+
+    boolean isOpenImplicitly = pathInfo.get(pathInfo.size() - 1).getIsOpenImplicitly();
+    for (FolderServerResourceExtract resource : resources) {
+      resource.setIsOpenImplicitly(isOpenImplicitly);
+    }
+
+    long total = findFolderContentsCount(folderSession, folderId, userId, req, resources.size());
+
+    r.setTotalCount(total);
+    r.setCurrentOffset(req.getOffset());
+
+    r.setResources(resources);
+
+    r.setPathInfo(pathInfo);
+
+    r.setPaging(LinkHeaderUtil.getPagingLinkHeaders(absoluteUrl, total, req.getLimit(), req.getOffset()));
+
+    return r;
+  }
+
+  private FolderServerNodeMapListResponse findFolderContentsAsMaps(FolderServiceSession folderSession, CedarFolderId folderId,
+                                                                   String userId, String absoluteUrl,
                                                                    List<FolderServerResourceExtract> pathInfo,
                                                                    PagedSortedTypedQuery pagedSortedTypedQuery, List<String> fieldNameList) {
     FolderServerNodeMapListResponse r = new FolderServerNodeMapListResponse();
@@ -297,7 +331,7 @@ public class FolderContentsResource extends AbstractResourceServerResource {
       // TODO: resource.setIsOpenImplicitly(isOpenImplicitly);
     }
 
-    long total = folderSession.findFolderContentsCount(folderId, req);
+    long total = findFolderContentsCount(folderSession, folderId, userId, req, resources.size());
 
     r.setTotalCount(total);
     r.setCurrentOffset(req.getOffset());
@@ -311,4 +345,15 @@ public class FolderContentsResource extends AbstractResourceServerResource {
     return r;
   }
 
+  // A short page is the last one, the total follows from it without running the count query
+  private long findFolderContentsCount(FolderServiceSession folderSession, CedarFolderId folderId, String userId,
+                                       NodeListRequest req, int pageSize) {
+    if (pageSize < req.getLimit() && (pageSize > 0 || req.getOffset() == 0)) {
+      long total = req.getOffset() + pageSize;
+      folderContentsCountCache.put(folderId, userId, req, total);
+      return total;
+    }
+    return folderContentsCountCache.get(folderId, userId, req, () -> folderSession.findFolderContentsCount(folderId, req));
+  }
+
 }
@@ -220,6 +220,7 @@ public class FoldersResource extends AbstractResourceServerResource {
       } else {
         boolean deleted = folderSession.deleteFolderById(fid);
         if (deleted) {
+          folderContentsCountCache.invalidateAll();
           removeIndexDocument(CedarUntypedFilesystemResourceId.build(id));
           return CedarResponse.noContent().build();
         } else {
@@ -397,6 +398,7 @@ public class FoldersResource extends AbstractResourceServerResource {
           .errorMessage("The folder was not created!")
           .build();
     }
+    folderContentsCountCache.invalidate(parentFolder.getResourceId());
 
     UriBuilder builder = uriInfo.getAbsolutePathBuilder();
     URI uri = builder.path(CedarUrlUtil.urlEncode(newFolder.getId())).build();
@@ -11,13 +11,12 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
-import org.apache.commons.codec.CharEncoding;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.util.EntityUtils;
 import org.metadatacenter.artifacts.model.core.Artifact;
 import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
 import org.metadatacenter.artifacts.model.tools.YamlSerializer;
+import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
 import org.metadatacenter.cedar.resource.resources.swaggermodel.TemplateInstance;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.constant.HttpConstants;
@@ -30,7 +29,6 @@ import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.security.model.auth.CedarPermission;
 import org.metadatacenter.util.http.CedarResponse;
 import org.metadatacenter.util.http.ProxyUtil;
-import org.metadatacenter.util.json.JsonMapper;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
@@ -141,14 +139,6 @@ public class TemplateInstancesResource extends AbstractResourceServerResource {
       return executeResourceGetByProxyFromArtifactServer(CedarResourceType.INSTANCE, id, c);
     }
     HttpEntity entity = proxyResponse.getEntity();
-    JsonNode instanceNode = null;
-
-    try {
-      String instanceSource = EntityUtils.toString(entity, CharEncoding.UTF_8);
-      instanceNode = JsonMapper.MAPPER.readTree(instanceSource);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
 
     String instanceUUID = linkedDataUtil.getUUID(id, CedarResourceType.INSTANCE);
 
@@ -158,12 +148,18 @@ public class TemplateInstancesResource extends AbstractResourceServerResource {
       return CedarResponse.ok()
           .type(MediaType.APPLICATION_JSON)
           .contentDispositionAttachment(fileName)
-          .entity(instanceNode)
+          .entity(ArtifactServerUtil.streamEntity(entity))
           .build();
     }
     // Handle YAML
     if (acceptHeader.contains(HttpConstants.CONTENT_TYPE_APPLICATION_YAML)) {
       String fileName = instanceUUID + ".yaml";
+      JsonNode instanceNode;
+      try {
+        instanceNode = ArtifactServerUtil.readTree(entity);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
       JsonArtifactReader reader = new JsonArtifactReader();
       Artifact modelArtifact = reader.readTemplateInstanceArtifact((ObjectNode) instanceNode);
       String content = YamlSerializer.getYAML(modelArtifact, compactParam.isPresent() && compactParam.get(), true);
@@ -12,13 +12,12 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
-import org.apache.commons.codec.CharEncoding;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.util.EntityUtils;
 import org.metadatacenter.artifacts.model.core.Artifact;
 import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
 import org.metadatacenter.artifacts.model.tools.YamlSerializer;
+import org.metadatacenter.cedar.artifact.ArtifactServerUtil;
 import org.metadatacenter.cedar.resource.resources.swaggermodel.Template;
 import org.metadatacenter.config.CedarConfig;
 import org.metadatacenter.constant.HttpConstants;
@@ -30,7 +29,6 @@ import org.metadatacenter.rest.context.CedarRequestContext;
 import org.metadatacenter.server.security.model.auth.CedarPermission;
 import org.metadatacenter.util.http.CedarResponse;
 import org.metadatacenter.util.http.ProxyUtil;
-import org.metadatacenter.util.json.JsonMapper;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
@@ -136,14 +134,6 @@ public class TemplatesResource extends AbstractResourceServerResource {
       return executeResourceGetByProxyFromArtifactServer(CedarResourceType.TEMPLATE, id, c);
     }
     HttpEntity entity = proxyResponse.getEntity();
-    JsonNode templateNode = null;
-
-    try {
-      String templateSource = EntityUtils.toString(entity, CharEncoding.UTF_8);
-      templateNode = JsonMapper.MAPPER.readTree(templateSource);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
 
     String templateUUID = linkedDataUtil.getUUID(id, CedarResourceType.TEMPLATE);
 
@@ -153,12 +143,18 @@ public class TemplatesResource extends AbstractResourceServerResource {
       return CedarResponse.ok()
           .type(MediaType.APPLICATION_JSON)
           .contentDispositionAttachment(fileName)
-          .entity(templateNode)
+          .entity(ArtifactServerUtil.streamEntity(entity))
           .build();
     }
     // Handle YAML
     if (acceptHeader.contains(HttpConstants.CONTENT_TYPE_APPLICATION_YAML)) {
       String fileName = templateUUID + ".yaml";
+      JsonNode templateNode;
+      try {
+        templateNode = ArtifactServerUtil.readTree(entity);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
       JsonArtifactReader reader = new JsonArtifactReader();
       Artifact modelArtifact = reader.readTemplateSchemaArtifact((ObjectNode) templateNode);
       String content = YamlSerializer.getYAML(modelArtifact, compactParam.isPresent() && compactParam.get(), true);
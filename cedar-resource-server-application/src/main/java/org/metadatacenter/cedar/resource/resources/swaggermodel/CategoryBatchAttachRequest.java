@@ -0,0 +1,38 @@
+package org.metadatacenter.cedar.resource.resources.swaggermodel;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+/**
+ * Documentation-only model for the parameters of a batch category attach or detach operation.
+ *
+ * <p>The command body is read as raw JSON, this bean only describes its schema. Every listed category is
+ * attached to (or detached from) every listed artifact.</p>
+ */
+@ApiModel(value = "CategoryBatchAttachRequest", description = "Parameters of the batch attach or detach operation.")
+public class CategoryBatchAttachRequest {
+
+  @ApiModelProperty(name = "artifactIds", value = "Unique URL identifier list representing the artifacts.")
+  private List<String> artifactIds;
+
+  @ApiModelProperty(name = "categoryIds", value = "Unique URL identifier list representing the categories.")
+  private List<String> categoryIds;
+
+  public List<String> getArtifactIds() {
+    return artifactIds;
+  }
+
+  public void setArtifactIds(List<String> artifactIds) {
+    this.artifactIds = artifactIds;
+  }
+
+  public List<String> getCategoryIds() {
+    return categoryIds;
+  }
+
+  public void setCategoryIds(List<String> categoryIds) {
+    this.categoryIds = categoryIds;
+  }
+}
@@ -0,0 +1,34 @@
+package org.metadatacenter.cedar.resource.task;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BackgroundTaskConfig {
+
+  @JsonProperty
+  private int queueCapacity = 4;
+
+  @JsonProperty
+  private int shutdownTimeoutSeconds = 30;
+
+  @JsonProperty
+  private int statusHistorySize = 20;
+
+  @JsonProperty
+  private int statusRetentionHours = 168;
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public int getShutdownTimeoutSeconds() {
+    return shutdownTimeoutSeconds;
+  }
+
+  public int getStatusHistorySize() {
+    return statusHistorySize;
+  }
+
+  public int getStatusRetentionHours() {
+    return statusRetentionHours;
+  }
+}
@@ -0,0 +1,116 @@
+package org.metadatacenter.cedar.resource.task;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the long-running administrative commands in the background.
+ * <p>
+ * Each pool has a single thread, so that the tasks working on the same index run one after the other, and a bounded
+ * queue. The queue depth, the number of running tasks and the task durations of every pool are published in the
+ * metric registry of the application, and are available on the admin port and through JMX. The state of every task
+ * is recorded in the {@link TaskStatusStore}, so that it can be followed from any node.
+ */
+public class BackgroundTaskExecutor {
+
+  private static final Logger log = LoggerFactory.getLogger(BackgroundTaskExecutor.class);
+
+  public enum Pool {
+    SEARCH_INDEX("search-index"),
+    RULES_INDEX("rules-index"),
+    VALUE_SETS("value-sets");
+
+    private final String value;
+
+    Pool(String value) {
+      this.value = value;
+    }
+
+    public String getValue() {
+      return value;
+    }
+  }
+
+  @FunctionalInterface
+  public interface Task {
+    void run() throws Exception;
+  }
+
+  private final BackgroundTaskConfig config;
+  private final TaskStatusStore statusStore;
+  private final Map<Pool, ThreadPoolExecutor> executors = new EnumMap<>(Pool.class);
+  private final Map<Pool, Timer> durations = new EnumMap<>(Pool.class);
+  private final Map<Pool, Counter> failures = new EnumMap<>(Pool.class);
+  private final Map<Pool, Counter> rejections = new EnumMap<>(Pool.class);
+
+  public BackgroundTaskExecutor(BackgroundTaskConfig config, TaskStatusStore statusStore, MetricRegistry metrics) {
+    this.config = config;
+    this.statusStore = statusStore;
+    for (Pool pool : Pool.values()) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(config.getQueueCapacity()), runnable -> {
+        Thread thread = new Thread(runnable, "background-task-" + pool.getValue());
+        thread.setDaemon(true);
+        return thread;
+      });
+      executors.put(pool, executor);
+      String prefix = MetricRegistry.name(BackgroundTaskExecutor.class, pool.getValue());
+      metrics.register(MetricRegistry.name(prefix, "queued"), (Gauge<Integer>) () -> executor.getQueue().size());
+      metrics.register(MetricRegistry.name(prefix, "active"), (Gauge<Integer>) executor::getActiveCount);
+      durations.put(pool, metrics.timer(MetricRegistry.name(prefix, "duration")));
+      failures.put(pool, metrics.counter(MetricRegistry.name(prefix, "failed")));
+      rejections.put(pool, metrics.counter(MetricRegistry.name(prefix, "rejected")));
+    }
+  }
+
+  // Returns the id of the task, or null if the queue of the pool is full, or the executor is shutting down
+  public String submit(Pool pool, String type, Task task) {
+    String taskId = statusStore.create(type);
+    try {
+      executors.get(pool).execute(() -> {
+        log.info("Starting background task " + type + " " + taskId);
+        statusStore.started(taskId);
+        try (Timer.Context ignored = durations.get(pool).time()) {
+          task.run();
+          statusStore.finished(taskId, null);
+          log.info("Finished background task " + type + " " + taskId);
+        } catch (Exception e) {
+          failures.get(pool).inc();
+          statusStore.finished(taskId, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+          log.error("Error in background task " + type + " " + taskId, e);
+        }
+      });
+      return taskId;
+    } catch (RejectedExecutionException e) {
+      rejections.get(pool).inc();
+      statusStore.finished(taskId, "Rejected, the " + pool.getValue() + " queue is full");
+      log.warn("Background task " + type + " rejected, the " + pool.getValue() + " queue is full");
+      return null;
+    }
+  }
+
+  public void stop() throws InterruptedException {
+    for (ThreadPoolExecutor executor : executors.values()) {
+      executor.shutdown();
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getShutdownTimeoutSeconds());
+    for (Map.Entry<Pool, ThreadPoolExecutor> entry : executors.entrySet()) {
+      long remaining = deadline - System.nanoTime();
+      if (!entry.getValue().awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+        log.warn("Background tasks of the " + entry.getKey().getValue() + " pool did not finish, interrupting them");
+        entry.getValue().shutdownNow();
+      }
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package org.metadatacenter.cedar.resource.task;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.cedar.resource.cluster.NodeHeartbeat;
+import org.metadatacenter.util.json.JsonMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status of the background tasks, shared by all the nodes through the persistent Redis.
+ * <p>
+ * A hash per task holds its state, the node running it and the timestamps, and expires after the retention period.
+ * The ids of the recent tasks of each type are kept in a list, newest first. A task is owned by the node id of the
+ * {@link NodeHeartbeat} of the node it was submitted to. Unfinished tasks whose node stopped sending heartbeats are
+ * marked as failed when they are read.
+ * <p>
+ * Task types that must not run twice at the same time on any node take a lock first. A lock is a key set only if it
+ * does not exist, holding the node id and expiring after the heartbeat lease. It is refreshed while this node holds
+ * it, so the lock of a stopped node is released once its lease expired.
+ */
+public class TaskStatusStore {
+
+  private static final Logger log = LoggerFactory.getLogger(TaskStatusStore.class);
+
+  public enum TaskState {
+    QUEUED, RUNNING, COMPLETE, FAILED
+  }
+
+  private static final String KEY_PREFIX = "cedar-resource-server:task-status:";
+  private static final String TASK_KEY_PREFIX = KEY_PREFIX + "task:";
+  private static final String RECENT_KEY_PREFIX = KEY_PREFIX + "recent:";
+  private static final String LOCK_KEY_PREFIX = KEY_PREFIX + "lock:";
+
+  private static final String REFRESH_LOCK_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0";
+  private static final String RELEASE_LOCK_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0";
+  private static final long LOCK_REFRESH_MILLIS = NodeHeartbeat.LEASE_MILLIS / 3;
+
+  private static final String FIELD_ID = "id";
+  private static final String FIELD_TYPE = "type";
+  private static final String FIELD_STATE = "state";
+  private static final String FIELD_NODE = "node";
+  private static final String FIELD_QUEUED_AT = "queuedAt";
+  private static final String FIELD_STARTED_AT = "startedAt";
+  private static final String FIELD_FINISHED_AT = "finishedAt";
+  private static final String FIELD_ERROR = "error";
+
+  private final JedisPool jedisPool;
+  private final NodeHeartbeat nodeHeartbeat;
+  private final BackgroundTaskConfig config;
+  private final Set<String> heldLocks = ConcurrentHashMap.newKeySet();
+  private ScheduledExecutorService lockKeeper;
+
+  public TaskStatusStore(JedisPool jedisPool, NodeHeartbeat nodeHeartbeat, BackgroundTaskConfig config) {
+    this.jedisPool = jedisPool;
+    this.nodeHeartbeat = nodeHeartbeat;
+    this.config = config;
+  }
+
+  public void start() {
+    lockKeeper = Executors.newSingleThreadScheduledExecutor();
+    lockKeeper.scheduleWithFixedDelay(this::refreshLocks, LOCK_REFRESH_MILLIS, LOCK_REFRESH_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  // The locks still held expire with the lease
+  public void stop() {
+    lockKeeper.shutdownNow();
+  }
+
+  // Returns false if a task of the type holds the lock, on this node or on any other
+  public boolean tryLock(String type) {
+    String lockKey = LOCK_KEY_PREFIX + type;
+    try (Jedis jedis = jedisPool.getResource()) {
+      if (!"OK".equals(jedis.set(lockKey, nodeHeartbeat.getNodeId(),
+          SetParams.setParams().nx().px(NodeHeartbeat.LEASE_MILLIS)))) {
+        return false;
+      }
+    }
+    heldLocks.add(lockKey);
+    return true;
+  }
+
+  public void unlock(String type) {
+    String lockKey = LOCK_KEY_PREFIX + type;
+    heldLocks.remove(lockKey);
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.eval(RELEASE_LOCK_SCRIPT, List.of(lockKey), List.of(nodeHeartbeat.getNodeId()));
+    } catch (Exception e) {
+      log.error("Error while releasing the lock of " + type + ", it expires with the lease", e);
+    }
+  }
+
+  public boolean isLocked(String type) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.exists(LOCK_KEY_PREFIX + type);
+    }
+  }
+
+  public String create(String type) {
+    String taskId = UUID.randomUUID().toString();
+    Map<String, String> task = new HashMap<>();
+    task.put(FIELD_ID, taskId);
+    task.put(FIELD_TYPE, type);
+    task.put(FIELD_STATE, TaskState.QUEUED.name());
+    task.put(FIELD_NODE, nodeHeartbeat.getNodeId());
+    task.put(FIELD_QUEUED_AT, Instant.now().toString());
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.hset(TASK_KEY_PREFIX + taskId, task);
+      jedis.expire(TASK_KEY_PREFIX + taskId, retentionSeconds());
+      jedis.lpush(RECENT_KEY_PREFIX + type, taskId);
+      jedis.ltrim(RECENT_KEY_PREFIX + type, 0, config.getStatusHistorySize() - 1);
+    }
+    return taskId;
+  }
+
+  public void started(String taskId) {
+    Map<String, String> fields = new HashMap<>();
+    fields.put(FIELD_STATE, TaskState.RUNNING.name());
+    fields.put(FIELD_STARTED_AT, Instant.now().toString());
+    update(taskId, fields);
+  }
+
+  public void finished(String taskId, String error) {
+    Map<String, String> fields = new HashMap<>();
+    fields.put(FIELD_STATE, error == null ? TaskState.COMPLETE.name() : TaskState.FAILED.name());
+    fields.put(FIELD_FINISHED_AT, Instant.now().toString());
+    if (error != null) {
+      fields.put(FIELD_ERROR, error);
+    }
+    update(taskId, fields);
+  }
+
+  // A task can be submitted again once the previous one, on any node, is finished or its node is gone
+  public boolean isActive(String type) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (String taskId : jedis.lrange(RECENT_KEY_PREFIX + type, 0, -1)) {
+        Map<String, String> task = jedis.hgetAll(TASK_KEY_PREFIX + taskId);
+        if (isUnfinished(task) && !failIfNodeStopped(jedis, taskId, task)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public ArrayNode getRecent(String type) {
+    ArrayNode tasks = JsonMapper.MAPPER.createArrayNode();
+    try (Jedis jedis = jedisPool.getResource()) {
+      for (String taskId : jedis.lrange(RECENT_KEY_PREFIX + type, 0, -1)) {
+        Map<String, String> task = jedis.hgetAll(TASK_KEY_PREFIX + taskId);
+        if (isUnfinished(task)) {
+          failIfNodeStopped(jedis, taskId, task);
+        }
+        if (task != null && !task.isEmpty()) {
+          tasks.add(toStatus(task));
+        }
+      }
+    }
+    return tasks;
+  }
+
+  private static boolean isUnfinished(Map<String, String> task) {
+    String state = task == null ? null : task.get(FIELD_STATE);
+    return TaskState.QUEUED.name().equals(state) || TaskState.RUNNING.name().equals(state);
+  }
+
+  // The fields of the given task are updated too, so that the caller reports it as failed
+  private boolean failIfNodeStopped(Jedis jedis, String taskId, Map<String, String> task) {
+    String node = task.get(FIELD_NODE);
+    if (nodeHeartbeat.isAlive(node)) {
+      return false;
+    }
+    log.warn("Background task " + taskId + " was interrupted, node " + node + " stopped");
+    Map<String, String> fields = new HashMap<>();
+    fields.put(FIELD_STATE, TaskState.FAILED.name());
+    fields.put(FIELD_FINISHED_AT, Instant.now().toString());
+    fields.put(FIELD_ERROR, "Interrupted, node " + node + " stopped");
+    jedis.hset(TASK_KEY_PREFIX + taskId, fields);
+    jedis.expire(TASK_KEY_PREFIX + taskId, retentionSeconds());
+    task.putAll(fields);
+    return true;
+  }
+
+  private void refreshLocks() {
+    for (String lockKey : heldLocks) {
+      try (Jedis jedis = jedisPool.getResource()) {
+        Object refreshed = jedis.eval(REFRESH_LOCK_SCRIPT, List.of(lockKey),
+            List.of(nodeHeartbeat.getNodeId(), String.valueOf(NodeHeartbeat.LEASE_MILLIS)));
+        if (!Long.valueOf(1).equals(refreshed)) {
+          log.error("Lost the lock " + lockKey + ", it expired before it was refreshed");
+          heldLocks.remove(lockKey);
+        }
+      } catch (Exception e) {
+        log.error("Error while refreshing the lock " + lockKey, e);
+      }
+    }
+  }
+
+  private void update(String taskId, Map<String, String> fields) {
+    String taskKey = TASK_KEY_PREFIX + taskId;
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.hset(taskKey, fields);
+      jedis.expire(taskKey, retentionSeconds());
+    } catch (Exception e) {
+      log.error("Error while updating the status of background task " + taskId, e);
+    }
+  }
+
+  private int retentionSeconds() {
+    return (int) TimeUnit.HOURS.toSeconds(config.getStatusRetentionHours());
+  }
+
+  private static ObjectNode toStatus(Map<String, String> task) {
+    ObjectNode status = JsonMapper.MAPPER.createObjectNode();
+    status.put(FIELD_ID, task.get(FIELD_ID));
+    status.put(FIELD_TYPE, task.get(FIELD_TYPE));
+    status.put(FIELD_STATE, task.get(FIELD_STATE));
+    status.put(FIELD_NODE, task.get(FIELD_NODE));
+    status.put(FIELD_QUEUED_AT, task.get(FIELD_QUEUED_AT));
+    status.put(FIELD_STARTED_AT, task.get(FIELD_STARTED_AT));
+    status.put(FIELD_FINISHED_AT, task.get(FIELD_FINISHED_AT));
+    status.put(FIELD_ERROR, task.get(FIELD_ERROR));
+    if (task.get(FIELD_STARTED_AT) != null) {
+      Instant end = task.get(FIELD_FINISHED_AT) != null ? Instant.parse(task.get(FIELD_FINISHED_AT)) : Instant.now();
+      status.put("durationSeconds", Duration.between(Instant.parse(task.get(FIELD_STARTED_AT)), end).getSeconds());
+    }
+    return status;
+  }
+}
@@ -0,0 +1,62 @@
+package org.metadatacenter.cedar.deltafinder.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.artifacts.model.core.TemplateSchemaArtifact;
+import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
+import org.metadatacenter.cedar.deltafinder.Delta;
+import org.metadatacenter.cedar.deltafinder.DeltaFinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs the template pairs used by the DeltaFinder tests of the core module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FixtureBenchmark {
+
+  @Param({"01", "02", "03", "04", "05", "06", "07", "08", "09", "10", "11", "12", "13", "14", "15", "16", "17", "18",
+      "19"})
+  public String fixture;
+
+  private ObjectNode oldNode;
+  private TemplateSchemaArtifact oldTemplate;
+  private TemplateSchemaArtifact newTemplate;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    JsonArtifactReader reader = new JsonArtifactReader();
+    oldNode = read(objectMapper, "v1");
+    oldTemplate = reader.readTemplateSchemaArtifact(oldNode);
+    newTemplate = reader.readTemplateSchemaArtifact(read(objectMapper, "v2"));
+  }
+
+  @Benchmark
+  public Delta findDelta() {
+    return new DeltaFinder().findDelta(oldTemplate, newTemplate);
+  }
+
+  @Benchmark
+  public TemplateSchemaArtifact readTemplate() {
+    return new JsonArtifactReader().readTemplateSchemaArtifact(oldNode);
+  }
+
+  private ObjectNode read(ObjectMapper objectMapper, String version) throws IOException {
+    String path = "deltafinder/template-" + fixture + "/template-" + fixture + "-" + version + ".json";
+    try (InputStream stream = getClass().getClassLoader().getResourceAsStream(path)) {
+      if (stream == null) {
+        throw new IOException("Could not load test template " + path + " from resources.");
+      }
+      return (ObjectNode) objectMapper.readTree(stream);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.metadatacenter.cedar.deltafinder.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.metadatacenter.artifacts.model.core.TemplateSchemaArtifact;
+import org.metadatacenter.artifacts.model.reader.JsonArtifactReader;
+import org.metadatacenter.cedar.deltafinder.Delta;
+import org.metadatacenter.cedar.deltafinder.DeltaFinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs generated templates, by number of fields, nesting depth, share of changed fields and size of the element
+ * chains.
+ * <p>
+ * The parallel mode runs on a pool of 4 threads, with the default parallelism and threshold of the resource server.
+ * Only chains of more fields than {@link DeltaFinder#DEFAULT_PARALLEL_THRESHOLD} are diffed in parallel, the chains of
+ * 100 fields measure the overhead of the parallel mode when nothing is forked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SyntheticTemplateBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int fields;
+
+  @Param({"1", "4", "8"})
+  public int depth;
+
+  @Param({"0.0", "0.01", "0.1"})
+  public double changeRatio;
+
+  @Param({"100", "1000"})
+  public int fieldsPerChain;
+
+  private ObjectNode oldNode;
+  private TemplateSchemaArtifact oldTemplate;
+  private TemplateSchemaArtifact newTemplate;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SyntheticTemplates.Pair pair = new SyntheticTemplates(new ObjectMapper()).generate(fields, depth, changeRatio,
+        fieldsPerChain);
+    JsonArtifactReader reader = new JsonArtifactReader();
+    oldNode = pair.oldTemplate();
+    oldTemplate = reader.readTemplateSchemaArtifact(pair.oldTemplate());
+    newTemplate = reader.readTemplateSchemaArtifact(pair.newTemplate());
+    pool = new ForkJoinPool(4);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Delta findDeltaSequential() {
+    return new DeltaFinder().findDelta(oldTemplate, newTemplate);
+  }
+
+  @Benchmark
+  public Delta findDeltaParallel() {
+    return new DeltaFinder(pool, DeltaFinder.DEFAULT_PARALLEL_THRESHOLD)
+        .findDelta(oldTemplate, newTemplate);
+  }
+
+  @Benchmark
+  public TemplateSchemaArtifact readTemplate() {
+    return new JsonArtifactReader().readTemplateSchemaArtifact(oldNode);
+  }
+}
@@ -0,0 +1,149 @@
+package org.metadatacenter.cedar.deltafinder.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Builds template pairs of arbitrary size for the DeltaFinder benchmarks.
+ * <p>
+ * The template, element and field JSON are taken from the template-18 test fixture, so that the generated templates
+ * are read by the artifact library the same way as the real ones. The fields are spread over chains of nested
+ * elements of the requested depth, one chain for every given number of fields. The second version of a pair has a
+ * share of the fields changed: every other changed field is renamed, the others become required.
+ */
+public final class SyntheticTemplates {
+
+  private static final String PROTOTYPE = "deltafinder/template-18/template-18-v1.json";
+  private static final String PROTOTYPE_ELEMENT = "element-18";
+  private static final String PROTOTYPE_FIELD = "Test Field for Inclusion";
+
+  private static final String TEMPLATE_ID_PREFIX = "https://repo.metadatacenter.org/templates/";
+  private static final String ELEMENT_ID_PREFIX = "https://repo.metadatacenter.org/template-elements/";
+  private static final String FIELD_ID_PREFIX = "https://repo.metadatacenter.org/template-fields/";
+  private static final String PROPERTY_PREFIX = "https://schema.metadatacenter.org/properties/";
+
+  private final ObjectNode templatePrototype;
+  private final ObjectNode elementPrototype;
+  private final ObjectNode fieldPrototype;
+
+  public record Pair(ObjectNode oldTemplate, ObjectNode newTemplate) {
+  }
+
+  public SyntheticTemplates(ObjectMapper objectMapper) throws IOException {
+    ObjectNode template = readPrototype(objectMapper);
+    ObjectNode element = (ObjectNode) template.get("properties").get(PROTOTYPE_ELEMENT);
+    ObjectNode field = (ObjectNode) element.get("properties").get(PROTOTYPE_FIELD);
+    fieldPrototype = field.deepCopy();
+    elementPrototype = element.deepCopy();
+    removeChild(elementPrototype, PROTOTYPE_FIELD);
+    templatePrototype = template.deepCopy();
+    removeChild(templatePrototype, PROTOTYPE_ELEMENT);
+  }
+
+  public Pair generate(int fields, int depth, double changeRatio, int fieldsPerChain) {
+    Set<Integer> changed = new HashSet<>();
+    Random random = new Random(42);
+    int changeCount = (int) Math.round(fields * changeRatio);
+    while (changed.size() < changeCount) {
+      changed.add(random.nextInt(fields));
+    }
+    return new Pair(build(fields, depth, fieldsPerChain, Collections.emptySet()),
+        build(fields, depth, fieldsPerChain, changed));
+  }
+
+  private ObjectNode build(int fields, int depth, int fieldsPerChain, Set<Integer> changed) {
+    ObjectNode template = templatePrototype.deepCopy();
+    template.put("@id", TEMPLATE_ID_PREFIX + uuid("template", 0));
+
+    int groups = Math.max(1, fields / fieldsPerChain);
+    List<List<ObjectNode>> chains = new ArrayList<>(groups);
+    for (int g = 0; g < groups; g++) {
+      List<ObjectNode> chain = new ArrayList<>(depth);
+      ObjectNode container = template;
+      for (int level = 0; level < depth; level++) {
+        String key = "Element " + g + "." + level;
+        ObjectNode element = elementPrototype.deepCopy();
+        element.put("@id", ELEMENT_ID_PREFIX + uuid("element", g * depth + level));
+        element.put("schema:name", key);
+        addChild(container, key, element, PROPERTY_PREFIX + uuid("element-property", g * depth + level));
+        chain.add(element);
+        container = element;
+      }
+      chains.add(chain);
+    }
+
+    // The fields are added after the elements, so that the order of the keys does not depend on the changes
+    for (int i = 0; i < fields; i++) {
+      boolean isChanged = changed.contains(i);
+      String key = "Field " + i;
+      ObjectNode field = fieldPrototype.deepCopy();
+      field.put("@id", FIELD_ID_PREFIX + uuid("field", i));
+      if (isChanged && i % 2 == 0) {
+        key += " renamed";
+      } else if (isChanged) {
+        ((ObjectNode) field.get("_valueConstraints")).put("requiredValue", true);
+      }
+      field.put("schema:name", key);
+      ObjectNode container = chains.get(i % groups).get((i / groups) % depth);
+      addChild(container, key, field, PROPERTY_PREFIX + uuid("field-property", i));
+    }
+    return template;
+  }
+
+  private static void addChild(ObjectNode container, String key, ObjectNode child, String propertyUri) {
+    ((ObjectNode) container.get("properties")).set(key, child);
+
+    ObjectNode context = (ObjectNode) container.get("properties").get("@context");
+    ((ObjectNode) context.get("properties")).putObject(key).putArray("enum").add(propertyUri);
+    ((ArrayNode) context.get("required")).add(key);
+    ((ArrayNode) container.get("required")).add(key);
+
+    ObjectNode ui = (ObjectNode) container.get("_ui");
+    ((ArrayNode) ui.get("order")).add(key);
+    ((ObjectNode) ui.get("propertyLabels")).put(key, key);
+    ((ObjectNode) ui.get("propertyDescriptions")).put(key, "");
+  }
+
+  private static void removeChild(ObjectNode container, String key) {
+    ((ObjectNode) container.get("properties")).remove(key);
+
+    ObjectNode context = (ObjectNode) container.get("properties").get("@context");
+    ((ObjectNode) context.get("properties")).remove(key);
+    removeValue((ArrayNode) context.get("required"), key);
+    removeValue((ArrayNode) container.get("required"), key);
+
+    ObjectNode ui = (ObjectNode) container.get("_ui");
+    removeValue((ArrayNode) ui.get("order"), key);
+    ((ObjectNode) ui.get("propertyLabels")).remove(key);
+    ((ObjectNode) ui.get("propertyDescriptions")).remove(key);
+  }
+
+  private static void removeValue(ArrayNode array, String value) {
+    for (int i = array.size() - 1; i >= 0; i--) {
+      if (value.equals(array.get(i).asText())) {
+        array.remove(i);
+      }
+    }
+  }
+
+  // The identifiers are derived from the position, so that both versions of a pair share them
+  private static String uuid(String kind, int index) {
+    return UUID.nameUUIDFromBytes((kind + ":" + index).getBytes()).toString();
+  }
+
+  private static ObjectNode readPrototype(ObjectMapper objectMapper) throws IOException {
+    try (InputStream stream = SyntheticTemplates.class.getClassLoader().getResourceAsStream(PROTOTYPE)) {
+      if (stream == null) {
+        throw new IOException("Could not load prototype template " + PROTOTYPE + " from resources.");
+      }
+      JsonNode node = objectMapper.readTree(stream);
+      return (ObjectNode) node;
+    }
+  }
+}
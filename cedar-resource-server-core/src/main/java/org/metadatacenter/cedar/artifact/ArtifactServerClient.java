@@ -0,0 +1,161 @@
+package org.metadatacenter.cedar.artifact;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.metadatacenter.exception.CedarProcessingException;
+import org.metadatacenter.rest.context.CedarRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP client for the resource server to artifact server hop. Connections are pooled and kept alive between calls.
+ * <p>
+ * The blocking methods return the response with its entity still streaming; the connection goes back to the pool
+ * once the entity is consumed or its stream is closed. The async methods buffer the entity before completing, so a
+ * pending future never holds on to a pooled connection.
+ */
+public class ArtifactServerClient implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(ArtifactServerClient.class);
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private final ThreadPoolExecutor asyncExecutor;
+
+  public ArtifactServerClient(ArtifactServerClientConfig config) {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectTimeout(config.getConnectTimeoutMillis())
+        .setSocketTimeout(config.getSocketTimeoutMillis())
+        .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+        .build();
+
+    httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy((response, context) -> {
+          long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+          return keepAlive > 0 ? keepAlive : config.getKeepAliveMillis();
+        })
+        .evictExpiredConnections()
+        .evictIdleConnections(config.getIdleConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .build();
+
+    AtomicInteger threadCounter = new AtomicInteger();
+    asyncExecutor = new ThreadPoolExecutor(config.getAsyncThreads(), config.getAsyncThreads(), 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(config.getAsyncQueueSize()), runnable -> {
+      Thread thread = new Thread(runnable, "artifact-server-client-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+    asyncExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  public HttpResponse get(String url, CedarRequestContext context) throws CedarProcessingException {
+    return execute(new HttpGet(url), context);
+  }
+
+  public HttpResponse post(String url, CedarRequestContext context, String content) throws CedarProcessingException {
+    return execute(withContent(new HttpPost(url), content), context);
+  }
+
+  public HttpResponse put(String url, CedarRequestContext context, String content) throws CedarProcessingException {
+    return execute(withContent(new HttpPut(url), content), context);
+  }
+
+  public HttpResponse delete(String url, CedarRequestContext context) throws CedarProcessingException {
+    return execute(new HttpDelete(url), context);
+  }
+
+  public CompletableFuture<HttpResponse> getAsync(String url, CedarRequestContext context) {
+    return executeAsync(new HttpGet(url), context);
+  }
+
+  public CompletableFuture<HttpResponse> postAsync(String url, CedarRequestContext context, String content) {
+    return executeAsync(withContent(new HttpPost(url), content), context);
+  }
+
+  public CompletableFuture<HttpResponse> putAsync(String url, CedarRequestContext context, String content) {
+    return executeAsync(withContent(new HttpPut(url), content), context);
+  }
+
+  public CompletableFuture<HttpResponse> deleteAsync(String url, CedarRequestContext context) {
+    return executeAsync(new HttpDelete(url), context);
+  }
+
+  private static <T extends HttpEntityEnclosingRequestBase> T withContent(T request, String content) {
+    request.setEntity(new StringEntity(content, ContentType.APPLICATION_JSON));
+    return request;
+  }
+
+  private HttpResponse execute(HttpRequestBase request, CedarRequestContext context) throws CedarProcessingException {
+    request.setHeader(HttpHeaders.AUTHORIZATION, context.getAuthorizationHeader());
+    try {
+      return httpClient.execute(request);
+    } catch (IOException e) {
+      throw new CedarProcessingException(e);
+    }
+  }
+
+  private CompletableFuture<HttpResponse> executeAsync(HttpRequestBase request, CedarRequestContext context) {
+    // The header is read on the calling thread, the request context is not handed over to the pool
+    request.setHeader(HttpHeaders.AUTHORIZATION, context.getAuthorizationHeader());
+    return CompletableFuture.supplyAsync(() -> {
+      try (CloseableHttpResponse response = httpClient.execute(request)) {
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+          response.setEntity(new BufferedHttpEntity(entity));
+        }
+        return response;
+      } catch (IOException e) {
+        throw new CompletionException(new CedarProcessingException(e));
+      }
+    }, asyncExecutor);
+  }
+
+  @Override
+  public void close() {
+    asyncExecutor.shutdown();
+    try {
+      if (!asyncExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+        asyncExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      asyncExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    try {
+      httpClient.close();
+    } catch (IOException e) {
+      log.error("Error while closing the artifact server client", e);
+    }
+    connectionManager.close();
+  }
+}
@@ -0,0 +1,69 @@
+package org.metadatacenter.cedar.artifact;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ArtifactServerClientConfig {
+
+  @JsonProperty
+  private int maxConnectionsTotal = 200;
+
+  @JsonProperty
+  private int maxConnectionsPerRoute = 100;
+
+  @JsonProperty
+  private int connectTimeoutMillis = 5000;
+
+  @JsonProperty
+  private int socketTimeoutMillis = 60000;
+
+  @JsonProperty
+  private int connectionRequestTimeoutMillis = 10000;
+
+  @JsonProperty
+  private long keepAliveMillis = 30000;
+
+  @JsonProperty
+  private long idleConnectionTimeoutMillis = 60000;
+
+  @JsonProperty
+  private int asyncThreads = 16;
+
+  @JsonProperty
+  private int asyncQueueSize = 1000;
+
+  public int getMaxConnectionsTotal() {
+    return maxConnectionsTotal;
+  }
+
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  public int getSocketTimeoutMillis() {
+    return socketTimeoutMillis;
+  }
+
+  public int getConnectionRequestTimeoutMillis() {
+    return connectionRequestTimeoutMillis;
+  }
+
+  public long getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  public long getIdleConnectionTimeoutMillis() {
+    return idleConnectionTimeoutMillis;
+  }
+
+  public int getAsyncThreads() {
+    return asyncThreads;
+  }
+
+  public int getAsyncQueueSize() {
+    return asyncQueueSize;
+  }
+}
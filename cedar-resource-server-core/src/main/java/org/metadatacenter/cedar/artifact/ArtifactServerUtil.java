@@ -1,10 +1,10 @@
 package org.metadatacenter.cedar.artifact;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import org.apache.commons.lang.CharEncoding;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.util.EntityUtils;
 import org.metadatacenter.exception.CedarProcessingException;
 import org.metadatacenter.id.CedarSchemaArtifactId;
 import org.metadatacenter.model.CedarResourceType;
@@ -15,19 +15,25 @@ import org.metadatacenter.util.json.JsonMapper;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class ArtifactServerUtil {
 
-  public static String getSchemaArtifactFromArtifactServer(CedarResourceType resourceType, CedarSchemaArtifactId id, CedarRequestContext context, MicroserviceUrlUtil microserviceUrlUtil,
-                                                           HttpServletResponse response) throws CedarProcessingException {
+  // The entity is returned unread, so that the caller parses it from the stream with its own error handling
+  public static HttpEntity getSchemaArtifactEntityFromArtifactServer(CedarResourceType resourceType, CedarSchemaArtifactId id, CedarRequestContext context,
+                                                                     MicroserviceUrlUtil microserviceUrlUtil, HttpServletResponse response) throws CedarProcessingException {
     try {
       String url = microserviceUrlUtil.getArtifact().getArtifactTypeWithId(resourceType, id);
       HttpResponse proxyResponse = ProxyUtil.proxyGet(url, context);
       if (response != null) {
         ProxyUtil.proxyResponseHeaders(proxyResponse, response);
       }
-      HttpEntity entity = proxyResponse.getEntity();
-      return EntityUtils.toString(entity, CharEncoding.UTF_8);
+      return proxyResponse.getEntity();
     } catch (Exception e) {
       throw new CedarProcessingException(e);
     }
@@ -42,8 +48,7 @@ public class ArtifactServerUtil {
     if (entity != null) {
       JsonNode responseNode = null;
       try {
-        String responseString = EntityUtils.toString(entity, CharEncoding.UTF_8);
-        responseNode = JsonMapper.MAPPER.readTree(responseString);
+        responseNode = readTree(entity);
       } catch (Exception e) {
         Response.status(statusCode).build();
       }
@@ -53,5 +58,47 @@ public class ArtifactServerUtil {
     }
   }
 
+  // Parses the entity straight from its stream, without materializing the whole document as a String first
+  public static JsonNode readTree(HttpEntity entity) throws IOException {
+    if (entity == null) {
+      return null;
+    }
+    try (InputStream is = entity.getContent()) {
+      return JsonMapper.MAPPER.readTree(is);
+    }
+  }
+
+  // Pipes the entity to the Jersey output as-is. Use it when the document is passed through without transformation
+  public static StreamingOutput streamEntity(HttpEntity entity) {
+    return output -> {
+      try (InputStream is = entity.getContent()) {
+        is.transferTo(output);
+      }
+    };
+  }
+
+  // Reads only the requested top-level keys using the streaming parser. Nested subtrees of other keys are skipped,
+  // and parsing stops as soon as all the requested keys were found
+  public static Map<String, JsonNode> readTopLevelValues(HttpEntity entity, Set<String> keys) throws IOException {
+    Map<String, JsonNode> values = new HashMap<>();
+    if (entity == null) {
+      return values;
+    }
+    try (InputStream is = entity.getContent(); JsonParser parser = JsonMapper.MAPPER.getFactory().createParser(is)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return values;
+      }
+      while (values.size() < keys.size() && parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        if (keys.contains(name)) {
+          values.put(name, JsonMapper.MAPPER.readTree(parser));
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return values;
+  }
 
 }
@@ -27,6 +27,12 @@ public class Delta {
     nonDestructiveChanges.add(change);
   }
 
+  // Appends the changes of the other delta, after the changes of this one
+  public void addAll(Delta other) {
+    destructiveChanges.addAll(other.destructiveChanges);
+    nonDestructiveChanges.addAll(other.nonDestructiveChanges);
+  }
+
   public List<Change> getDestructiveChanges() {
     return destructiveChanges;
   }
@@ -7,18 +7,84 @@ import org.metadatacenter.artifacts.model.core.fields.constraints.ValueConstrain
 import org.metadatacenter.cedar.deltafinder.change.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class DeltaFinder {
 
+  // Elements with at least this many nested fields and elements are worth a task of their own
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 200;
+
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  // Structural hashes of the elements of the compared templates, computed once, bottom-up, and shared by the rename
+  // detection and the recursion into common elements
+  private final Map<ElementSchemaArtifact, Integer> elementHashes = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final Map<ElementSchemaArtifact, Integer> subtreeSizes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+  public DeltaFinder() {
+    this(null, 0);
+  }
+
+  // Common elements whose subtree reaches the threshold are diffed in parallel on the pool. The result is the same
+  // as the one of the sequential mode, in the same order.
+  public DeltaFinder(ForkJoinPool pool, int parallelThreshold) {
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
+  }
+
   public Delta findDelta(TemplateSchemaArtifact oldTemplate, TemplateSchemaArtifact newTemplate) {
     Delta delta = new Delta();
-    compareSchemas(oldTemplate.fieldSchemas(), oldTemplate.elementSchemas(),
+    Runnable comparison = () -> compareSchemas(oldTemplate.fieldSchemas(), oldTemplate.elementSchemas(),
         newTemplate.fieldSchemas(), newTemplate.elementSchemas(),
         oldTemplate.templateUi().order(), newTemplate.templateUi().order(),
         delta);
+    // A nested element is never larger than the top-level element holding it: if no top-level element reaches the
+    // threshold, nothing is forked and the comparison runs on the calling thread
+    if (pool != null && (reachesParallelThreshold(oldTemplate) || reachesParallelThreshold(newTemplate))) {
+      pool.invoke(ForkJoinTask.adapt(comparison));
+    } else {
+      comparison.run();
+    }
     return delta;
   }
 
+  private boolean reachesParallelThreshold(TemplateSchemaArtifact template) {
+    for (ElementSchemaArtifact element : template.elementSchemas().values()) {
+      if (subtreeSize(element) >= parallelThreshold) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Diffs a pair of common elements into a delta of its own, so that the deltas can be merged in key order
+  private final class ElementDiff extends RecursiveTask<Delta> {
+    private final ElementSchemaArtifact oldElem;
+    private final ElementSchemaArtifact newElem;
+    private final boolean forked;
+
+    private ElementDiff(ElementSchemaArtifact oldElem, ElementSchemaArtifact newElem, boolean forked) {
+      this.oldElem = oldElem;
+      this.newElem = newElem;
+      this.forked = forked;
+    }
+
+    @Override
+    protected Delta compute() {
+      Delta fragment = new Delta();
+      compareSchemas(
+          oldElem.fieldSchemas(), oldElem.elementSchemas(),
+          newElem.fieldSchemas(), newElem.elementSchemas(),
+          oldElem.getUi().order(), newElem.getUi().order(),
+          fragment
+      );
+      return fragment;
+    }
+  }
+
   private void compareSchemas(Map<String, FieldSchemaArtifact> oldFields,
                               Map<String, ElementSchemaArtifact> oldElements,
                               Map<String, FieldSchemaArtifact> newFields,
@@ -36,55 +102,50 @@ public class DeltaFinder {
     newKeys.addAll(newElements.keySet());
 
     // Step 1: Detect Renames
-    Map<String, String> renamedFields = new HashMap<>();
+    // The added fields are indexed by signature, a removed field is matched with the first added field with the
+    // same signature
     Set<String> matchedOldKeys = new HashSet<>();
     Set<String> matchedNewKeys = new HashSet<>();
 
-    for (String oldKey : oldFields.keySet()) {
+    Map<FieldSignature, Deque<String>> addedFields = new HashMap<>();
+    for (Map.Entry<String, FieldSchemaArtifact> entry : newFields.entrySet()) {
+      if (!oldFields.containsKey(entry.getKey())) {
+        addedFields.computeIfAbsent(FieldSignature.of(entry.getValue()), k -> new ArrayDeque<>()).add(entry.getKey());
+      }
+    }
+    for (Map.Entry<String, FieldSchemaArtifact> entry : oldFields.entrySet()) {
+      String oldKey = entry.getKey();
       if (newFields.containsKey(oldKey)) {
         continue;
       }
-      FieldSchemaArtifact oldField = oldFields.get(oldKey);
-      for (String newKey : newFields.keySet()) {
-        if (oldFields.containsKey(newKey)) {
-          continue;
-        }
-
-        FieldSchemaArtifact newField = newFields.get(newKey);
-        if (oldField.getClass().equals(newField.getClass()) &&
-            Objects.equals(oldField.fieldUi(), newField.fieldUi()) &&
-            areValueConstraintsEqual(oldField, newField)) {
-
-          renamedFields.put(oldKey, newKey);
-          matchedOldKeys.add(oldKey);
-          matchedNewKeys.add(newKey);
-          delta.addNonDestructiveChange(new Rename(oldKey, newKey));
-          break;
-        }
+      Deque<String> candidates = addedFields.get(FieldSignature.of(entry.getValue()));
+      if (candidates != null && !candidates.isEmpty()) {
+        String newKey = candidates.poll();
+        matchedOldKeys.add(oldKey);
+        matchedNewKeys.add(newKey);
+        delta.addNonDestructiveChange(new Rename(oldKey, newKey));
       }
     }
 
     // Step 1b: Detect Renames in Elements
-    for (String oldKey : oldElements.keySet()) {
-      if (newElements.containsKey(oldKey)) continue;
-      ElementSchemaArtifact oldElement = oldElements.get(oldKey);
-
-      for (String newKey : newElements.keySet()) {
-        if (oldElements.containsKey(newKey) || matchedNewKeys.contains(newKey)) continue;
-
-        ElementSchemaArtifact newElement = newElements.get(newKey);
-
-        // Compare inner structure: field sets and schemas
-        if (Objects.equals(oldElement.fieldSchemas(), newElement.fieldSchemas()) &&
-            Objects.equals(oldElement.elementSchemas(), newElement.elementSchemas()) &&
-            Objects.equals(oldElement.getUi(), newElement.getUi())) {
-
-          renamedFields.put(oldKey, newKey);
-          matchedOldKeys.add(oldKey);
-          matchedNewKeys.add(newKey);
-          delta.addNonDestructiveChange(new Rename(oldKey, newKey));
-          break;
-        }
+    Map<ElementSignature, Deque<String>> addedElements = new HashMap<>();
+    for (Map.Entry<String, ElementSchemaArtifact> entry : newElements.entrySet()) {
+      String newKey = entry.getKey();
+      if (!oldElements.containsKey(newKey) && !matchedNewKeys.contains(newKey)) {
+        addedElements.computeIfAbsent(elementSignature(entry.getValue()), k -> new ArrayDeque<>()).add(newKey);
+      }
+    }
+    for (Map.Entry<String, ElementSchemaArtifact> entry : oldElements.entrySet()) {
+      String oldKey = entry.getKey();
+      if (newElements.containsKey(oldKey)) {
+        continue;
+      }
+      Deque<String> candidates = addedElements.get(elementSignature(entry.getValue()));
+      if (candidates != null && !candidates.isEmpty()) {
+        String newKey = candidates.poll();
+        matchedOldKeys.add(oldKey);
+        matchedNewKeys.add(newKey);
+        delta.addNonDestructiveChange(new Rename(oldKey, newKey));
       }
     }
 
@@ -143,15 +204,23 @@ public class DeltaFinder {
     // Step 5: Recursively handle elements
     Set<String> commonElementKeys = new HashSet<>(oldElements.keySet());
     commonElementKeys.retainAll(newElements.keySet());
+    List<ElementDiff> elementDiffs = new ArrayList<>();
     for (String key : commonElementKeys) {
       ElementSchemaArtifact oldElem = oldElements.get(key);
       ElementSchemaArtifact newElem = newElements.get(key);
-      compareSchemas(
-          oldElem.fieldSchemas(), oldElem.elementSchemas(),
-          newElem.fieldSchemas(), newElem.elementSchemas(),
-          oldElem.getUi().order(), newElem.getUi().order(),
-          delta
-      );
+      // An unchanged subtree produces no changes. Subtrees with different hashes are never compared.
+      if (elementSignature(oldElem).equals(elementSignature(newElem))) {
+        continue;
+      }
+      boolean fork = pool != null && Math.max(subtreeSize(oldElem), subtreeSize(newElem)) >= parallelThreshold;
+      ElementDiff elementDiff = new ElementDiff(oldElem, newElem, fork);
+      if (fork) {
+        elementDiff.fork();
+      }
+      elementDiffs.add(elementDiff);
+    }
+    for (ElementDiff elementDiff : elementDiffs) {
+      delta.addAll(elementDiff.forked ? elementDiff.join() : elementDiff.compute());
     }
 
     // Step 6: Order change detection
@@ -185,6 +254,93 @@ public class DeltaFinder {
   }
 
 
+  // Two fields have the same signature if they have the same type and UI, and the same value constraint type,
+  // required, recommended, multiple choice and default values. For text constraints, the length limits, regex and
+  // literals are also compared.
+  private record FieldSignature(Class<?> type, Object fieldUi, Class<?> constraintsType, boolean requiredValue,
+                                boolean recommendedValue, boolean multipleChoice, Object defaultValue,
+                                Object minLength, Object maxLength, Object regex, Object literals) {
+
+    static FieldSignature of(FieldSchemaArtifact field) {
+      Optional<ValueConstraints> vcOpt = field.valueConstraints();
+      if (vcOpt.isEmpty()) {
+        return new FieldSignature(field.getClass(), field.fieldUi(), null, false, false, false, null, null, null,
+            null, null);
+      }
+      ValueConstraints vc = vcOpt.get();
+      if (vc.isTextValueConstraint()) {
+        var textVC = vc.asTextValueConstraints();
+        return new FieldSignature(field.getClass(), field.fieldUi(), vc.getClass(), vc.requiredValue(),
+            vc.recommendedValue(), vc.multipleChoice(), vc.defaultValue(), textVC.minLength(), textVC.maxLength(),
+            textVC.regex(), textVC.literals());
+      }
+      return new FieldSignature(field.getClass(), field.fieldUi(), vc.getClass(), vc.requiredValue(),
+          vc.recommendedValue(), vc.multipleChoice(), vc.defaultValue(), null, null, null, null);
+    }
+  }
+
+  // Two elements have the same signature if they have equal field schemas, nested element schemas and UI. The hash
+  // code is the precomputed structural hash, equal elements always have equal structural hashes.
+  private static final class ElementSignature {
+    private final ElementSchemaArtifact element;
+    private final int hash;
+
+    private ElementSignature(ElementSchemaArtifact element, int hash) {
+      this.element = element;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ElementSignature other) || hash != other.hash) {
+        return false;
+      }
+      return Objects.equals(element.fieldSchemas(), other.element.fieldSchemas()) &&
+          Objects.equals(element.elementSchemas(), other.element.elementSchemas()) &&
+          Objects.equals(element.getUi(), other.element.getUi());
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private ElementSignature elementSignature(ElementSchemaArtifact element) {
+    return new ElementSignature(element, structuralHash(element));
+  }
+
+  private int subtreeSize(ElementSchemaArtifact element) {
+    Integer cached = subtreeSizes.get(element);
+    if (cached != null) {
+      return cached;
+    }
+    int size = element.fieldSchemas().size();
+    for (ElementSchemaArtifact child : element.elementSchemas().values()) {
+      size += 1 + subtreeSize(child);
+    }
+    subtreeSizes.put(element, size);
+    return size;
+  }
+
+  private int structuralHash(ElementSchemaArtifact element) {
+    Integer cached = elementHashes.get(element);
+    if (cached != null) {
+      return cached;
+    }
+    // Order independent, like the equality of the nested element maps
+    int childrenHash = 0;
+    for (Map.Entry<String, ElementSchemaArtifact> child : element.elementSchemas().entrySet()) {
+      childrenHash += child.getKey().hashCode() ^ structuralHash(child.getValue());
+    }
+    int hash = Objects.hash(element.fieldSchemas(), childrenHash, element.getUi());
+    elementHashes.put(element, hash);
+    return hash;
+  }
+
   private boolean isDestructiveTypeChange(String oldType, String newType) {
     if (oldType.equals(newType)) {
       return false;
@@ -232,51 +388,6 @@ public class DeltaFinder {
     return new String[]{"unknown", "unknown"};
   }
 
-  private boolean areValueConstraintsEqual(FieldSchemaArtifact oldField, FieldSchemaArtifact newField) {
-    Optional<ValueConstraints> oldVCOpt = oldField.valueConstraints();
-    Optional<ValueConstraints> newVCOpt = newField.valueConstraints();
-
-    if (oldVCOpt.isEmpty() && newVCOpt.isEmpty()) {
-      return true;
-    }
-    if (oldVCOpt.isEmpty() || newVCOpt.isEmpty()) {
-      return false;
-    }
-
-    ValueConstraints oldVC = oldVCOpt.get();
-    ValueConstraints newVC = newVCOpt.get();
-
-    // 1. Check if the types match
-    if (!oldVC.getClass().equals(newVC.getClass())) {
-      return false;
-    }
-
-    // 2. Compare base fields
-    boolean baseFieldsEqual =
-        oldVC.requiredValue() == newVC.requiredValue() &&
-            oldVC.recommendedValue() == newVC.recommendedValue() &&
-            oldVC.multipleChoice() == newVC.multipleChoice() &&
-            Objects.equals(oldVC.defaultValue(), newVC.defaultValue());
-
-    if (!baseFieldsEqual) {
-      return false;
-    }
-
-    // 3. If TextValueConstraints, compare minLength, maxLength, regex
-    if (oldVC.isTextValueConstraint() && newVC.isTextValueConstraint()) {
-      var oldTextVC = oldVC.asTextValueConstraints();
-      var newTextVC = newVC.asTextValueConstraints();
-
-      return Objects.equals(oldTextVC.minLength(), newTextVC.minLength()) &&
-          Objects.equals(oldTextVC.maxLength(), newTextVC.maxLength()) &&
-          Objects.equals(oldTextVC.regex(), newTextVC.regex()) &&
-          Objects.equals(oldTextVC.literals(), newTextVC.literals());
-    }
-
-    // 4. Otherwise, if not TextValueConstraints, assume they are equal now
-    return true;
-  }
-
   private void detectValueConstraintsChange(FieldSchemaArtifact oldField,
                                             FieldSchemaArtifact newField,
                                             String key,
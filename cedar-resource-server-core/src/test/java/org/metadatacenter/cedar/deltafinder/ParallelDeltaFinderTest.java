@@ -0,0 +1,45 @@
+package org.metadatacenter.cedar.deltafinder;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.metadatacenter.cedar.deltafinder.change.Change;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelDeltaFinderTest extends SimpleTemplateTest {
+
+  private static ForkJoinPool pool;
+
+  @BeforeClass
+  public static void createPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterClass
+  public static void shutdownPool() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    for (int i = 1; i <= 19; i++) {
+      String testNumber = String.format("%02d", i);
+      Delta sequential = testSimpleTemplate(testNumber, new DeltaFinder());
+      // A threshold of 0 forks every changed element
+      Delta parallel = testSimpleTemplate(testNumber, new DeltaFinder(pool, 0));
+
+      assertEquals("Destructive changes differ for template " + testNumber,
+          describe(sequential.getDestructiveChanges()), describe(parallel.getDestructiveChanges()));
+      assertEquals("Non-destructive changes differ for template " + testNumber,
+          describe(sequential.getNonDestructiveChanges()), describe(parallel.getNonDestructiveChanges()));
+    }
+  }
+
+  private static List<String> describe(List<Change> changes) {
+    return changes.stream().map(c -> c.getClass().getSimpleName() + ": " + c).toList();
+  }
+}
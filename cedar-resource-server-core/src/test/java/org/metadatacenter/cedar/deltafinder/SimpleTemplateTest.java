@@ -19,6 +19,10 @@ abstract public class SimpleTemplateTest {
   }
 
   public Delta testSimpleTemplate(String testNumber) throws Exception {
+    return testSimpleTemplate(testNumber, new DeltaFinder());
+  }
+
+  public Delta testSimpleTemplate(String testNumber, DeltaFinder finder) throws Exception {
     String folder = "deltafinder/template-" + testNumber + "/";
     InputStream oldStream = getClass().getClassLoader().getResourceAsStream(folder + "/template-" + testNumber + "-v1"
         + ".json");
@@ -42,7 +46,6 @@ abstract public class SimpleTemplateTest {
 //    System.out.println(oldModelArtifact);
 //    System.out.println(newModelArtifact);
 
-    DeltaFinder finder = new DeltaFinder();
     Delta delta= finder.findDelta(oldModelArtifact, newModelArtifact);
 //    System.out.println(delta);
     return delta;
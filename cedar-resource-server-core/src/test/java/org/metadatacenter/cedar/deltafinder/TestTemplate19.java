@@ -0,0 +1,32 @@
+package org.metadatacenter.cedar.deltafinder;
+
+import org.junit.Test;
+import org.metadatacenter.cedar.deltafinder.change.*;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestTemplate19 extends SimpleTemplateTest {
+
+  @Test
+  public void testSimpleTemplate() throws Exception {
+    Delta delta = testSimpleTemplate("19");
+
+    List<Change> destructive = delta.getDestructiveChanges();
+    List<Change> nonDestructive = delta.getNonDestructiveChanges();
+
+    // Field 2 and Field 3 are removed, Field 4 is added with the same structure. Only one of them can be renamed.
+    List<Change> renames = nonDestructive.stream().filter(c -> c instanceof Rename).toList();
+    assertEquals("Expected a single Rename", 1, renames.size());
+    assertEquals("Expected Rename to Field 4", "Field 4", ((Rename) renames.get(0)).getNewFieldName());
+
+    String renamedField = renames.get(0).getFieldName();
+    String deletedField = renamedField.equals("Field 2") ? "Field 3" : "Field 2";
+    boolean hasExpectedDeletion = destructive.stream().anyMatch(c ->
+        c instanceof Deletion &&
+            c.getFieldName().equals(deletedField) &&
+            ((Deletion) c).getArtifactType().equals("field"));
+    assertTrue("Expected Deletion on field: " + deletedField, hasExpectedDeletion);
+  }
+}